@@ -0,0 +1,86 @@
+package xyz.duncanruns.prismarinetracker;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FormattingUtil} against the {@link String#format} and {@link SimpleDateFormat} calls it replaced, which are
+ * still what it falls back to. Run with "-prof gc" to see the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormattingBenchmark {
+    private static final int VALUES = 1024;
+
+    private final long[] seconds = new long[VALUES];
+    private final long[] dates = new long[VALUES];
+    private final int[] counts = new int[VALUES];
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        for (int i = 0; i < VALUES; i++) {
+            // Split times up to 20 minutes, with some session lengths of a few hours
+            seconds[i] = i % 8 == 0 ? random.nextInt(6 * 3600) : random.nextInt(1200);
+            dates[i] = 1_700_000_000_000L + random.nextInt(Integer.MAX_VALUE) * 10L;
+            counts[i] = random.nextInt(200);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (VALUES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public String formatSeconds() {
+        return FormattingUtil.formatSeconds(seconds[nextIndex()]);
+    }
+
+    @Benchmark
+    public String formatSecondsStringFormat() {
+        long totalSeconds = seconds[nextIndex()];
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+        long secs = totalSeconds % 60;
+        if (hours == 0) {
+            return String.format("%d:%02d", minutes, secs);
+        }
+        return String.format("%d:%02d:%02d", hours, minutes, secs);
+    }
+
+    @Benchmark
+    public String getPerHour() {
+        int i = nextIndex();
+        return FormattingUtil.getPerHour(counts[i], seconds[i] * 1000 + 1);
+    }
+
+    @Benchmark
+    public String getPerHourStringFormat() {
+        int i = nextIndex();
+        return String.format("%.2f", counts[i] / ((seconds[i] * 1000 + 1) / 3600000.0));
+    }
+
+    @Benchmark
+    public String formatDate() {
+        return FormattingUtil.formatDate(dates[nextIndex()]);
+    }
+
+    @Benchmark
+    public String formatDateSimpleDateFormat() {
+        Date date = new Date(dates[nextIndex()]);
+        int day = Integer.parseInt(new SimpleDateFormat("d").format(date));
+        String suffix = day >= 11 && day <= 13 ? "th" : day % 10 == 1 ? "st" : day % 10 == 2 ? "nd" : day % 10 == 3 ? "rd" : "th";
+        return new SimpleDateFormat("MMMM ").format(date) + day + suffix + new SimpleDateFormat(", yyyy, HH:mm").format(date);
+    }
+}
@@ -0,0 +1,90 @@
+package xyz.duncanruns.prismarinetracker;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.duncanruns.prismarinetracker.util.LongSeries;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LongSeries} against the {@code LinkedList<Long>} the session's times used to be kept in. Run with "-prof gc" for
+ * the footprint: gc.alloc.rate.norm of the build benchmarks is the bytes allocated building a whole series, which for
+ * the list is also what it keeps, while the series only keeps its last array (8 bytes per entry, up to 1.5 times over).
+ * The other benchmarks time an average and a p90 over a full series.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LongSeriesBenchmark {
+    @Param({"1000", "50000"})
+    public int size;
+
+    private long[] times;
+    private LinkedList<Long> linkedList;
+    private LongSeries series;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        times = new long[size];
+        for (int i = 0; i < size; i++) {
+            // Split times, somewhere between 10 seconds and 20 minutes
+            times[i] = 10_000 + random.nextInt(1_190_000);
+        }
+        linkedList = buildLinkedList();
+        series = buildLongSeries();
+    }
+
+    @Benchmark
+    public LinkedList<Long> buildLinkedList() {
+        LinkedList<Long> out = new LinkedList<>();
+        for (long time : times) {
+            out.add(time);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public LongSeries buildLongSeries() {
+        LongSeries out = new LongSeries();
+        for (long time : times) {
+            out.add(time);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public long averageLinkedList() {
+        long sum = 0;
+        for (Long time : linkedList) {
+            sum += time;
+        }
+        return sum / linkedList.size();
+    }
+
+    @Benchmark
+    public long averageLongSeries() {
+        long sum = 0;
+        for (int i = 0; i < series.size(); i++) {
+            sum += series.get(i);
+        }
+        return sum / series.size();
+    }
+
+    @Benchmark
+    public long p90LinkedList() {
+        List<Long> sorted = new ArrayList<>(linkedList);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(0.9 * sorted.size()) - 1);
+    }
+
+    @Benchmark
+    public long p90LongSeries() {
+        long[] sorted = series.toArray();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.9 * sorted.length) - 1];
+    }
+}
@@ -0,0 +1,92 @@
+package xyz.duncanruns.prismarinetracker;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to take in a burst of records (10k by default) the way the ingest thread does: read ahead on a
+ * {@link RecordParser} with the given amount of threads, and counted into a session one at a time and in order. 0 threads
+ * reads every record on the benchmark thread, like before the parser pool. Compare the thread counts on a machine with
+ * at least that many cores; with fewer, the extra threads only share the same cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RecordBurstBenchmark {
+    /**
+     * A folder of real records, or empty for the SpeedRunIGT records folder (generated if it doesn't have enough).
+     */
+    @Param({""})
+    public String recordsDir;
+    @Param({"10000"})
+    public int records;
+    @Param({"0", "1", "3", "7"})
+    public int threads;
+
+    private List<RecordRebuilder.RecordFile> recordFiles;
+    private RecordParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        recordFiles = new ArrayList<>(records);
+        for (Path path : RecordCorpus.get(recordsDir, records)) {
+            recordFiles.add(new RecordRebuilder.RecordFile(path, Files.getLastModifiedTime(path).toMillis(), 0));
+        }
+        parser = new RecordParser(Math.max(1, threads));
+        if (threads == 0) {
+            // Everything submitted to a shut down parser is read on the submitting thread
+            parser.shutdown();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parser.shutdown();
+    }
+
+    @Benchmark
+    public PlaySession burst() throws IOException {
+        PlaySession session = new PlaySession(0);
+        TimelineEvents timeLineEvents = new TimelineEvents();
+        // The same window as PrismarineTracker.processRecordFiles
+        List<Future<RecordParser.ParsedRecord>> parsing = new ArrayList<>(recordFiles.size());
+        for (int i = 0; i < recordFiles.size(); i++) {
+            while (parsing.size() < recordFiles.size() && parsing.size() < i + RecordParser.WINDOW) {
+                parsing.add(parser.submit(recordFiles.get(parsing.size())));
+            }
+            RecordParser.ParsedRecord parsed = RecordParser.await(parsing.get(i));
+            parsing.set(i, null);
+            if (parsed.record != null) count(session, parsed, timeLineEvents);
+        }
+        return session;
+    }
+
+    /**
+     * What processRecord does with a record, without the logging, run files and ledger that need the tracker running.
+     */
+    private static void count(PlaySession session, RecordParser.ParsedRecord parsed, TimelineEvents timeLineEvents) {
+        RunRecord record = parsed.record;
+        if (!PrismarineTracker.shouldTrack(record)) return;
+        timeLineEvents.clear();
+        for (RunRecord.TimelineEvent event : record.timelines) {
+            if (PrismarineTracker.isBeforeLan(record, event)) {
+                timeLineEvents.put(event.name, event.igt);
+            }
+        }
+        SessionDelta delta = new SessionDelta(parsed.file.modified);
+        delta.resets = 1;
+        PrismarineTracker.addRecordStats(delta, record, timeLineEvents);
+        delta.lastActivity = parsed.file.modified;
+        session.apply(delta);
+    }
+}
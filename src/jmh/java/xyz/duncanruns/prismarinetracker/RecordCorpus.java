@@ -0,0 +1,151 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Record files for the benchmarks. Real records are used when there are enough of them, otherwise records of the same
+ * shape (a few hundred stats and advancements, about 12KB each) are generated into a temporary folder.
+ */
+final class RecordCorpus {
+    private static final String[] EVENTS = {"pick_gold_block", "found_villager", "trade_with_villager", "enter_nether", "enter_fortress", "nether_travel", "enter_stronghold", "enter_end"};
+    private static final String[] STAT_TYPES = {"minecraft:mined", "minecraft:used", "minecraft:picked_up", "minecraft:custom", "minecraft:killed"};
+
+    private RecordCorpus() {
+    }
+
+    /**
+     * @param recordsDir a folder of real records, or empty for the SpeedRunIGT records folder
+     * @return paths to at least the given number of records, oldest first
+     */
+    static List<Path> get(String recordsDir, int count) throws IOException {
+        Path dir = recordsDir.isEmpty() ? Paths.get(System.getProperty("user.home"), "speedrunigt", "records") : Paths.get(recordsDir);
+        if (Files.isDirectory(dir)) {
+            List<Path> real;
+            try (Stream<Path> files = Files.list(dir)) {
+                real = files.filter(p -> p.getFileName().toString().endsWith(".json"))
+                        .sorted(Comparator.comparing(Path::getFileName))
+                        .limit(count)
+                        .collect(Collectors.toList());
+            }
+            if (real.size() == count) return real;
+        }
+        return generate(Files.createTempDirectory("prismarine-records"), count);
+    }
+
+    /**
+     * Writes records that look like SpeedRunIGT's, most of them runs the tracker counts, with their modification times a
+     * minute apart.
+     */
+    static List<Path> generate(Path dir, int count) throws IOException {
+        Random random = new Random(count);
+        List<Path> out = new ArrayList<>(count);
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            Path path = dir.resolve(String.format("%08d.json", i));
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writeRecord(new JsonWriter(writer), random, time, i);
+            }
+            time += 60_000;
+            Files.setLastModifiedTime(path, FileTime.fromMillis(time));
+            out.add(path);
+        }
+        dir.toFile().deleteOnExit();
+        for (Path path : out) {
+            path.toFile().deleteOnExit();
+        }
+        return out;
+    }
+
+    private static void writeRecord(JsonWriter writer, Random random, long date, int index) throws IOException {
+        int events = random.nextInt(10) < 4 ? 0 : 1 + random.nextInt(EVENTS.length);
+        long rta = 0;
+        List<long[]> timeline = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            rta += 5_000 + random.nextInt(90_000);
+            timeline.add(new long[]{i, rta, rta - random.nextInt(2_000)});
+        }
+        long finalRta = rta + 1_000 + random.nextInt(30_000);
+        boolean completed = events == EVENTS.length && random.nextInt(4) == 0;
+
+        writer.beginObject();
+        writer.name("speedrunigt_version").value("13.3");
+        writer.name("mc_version").value(random.nextInt(20) == 0 ? "1.16.1" : "1.15.2");
+        writer.name("world_name").value("Random Speedrun #" + index);
+        writer.name("date").value(date);
+        writer.name("run_type").value(random.nextInt(30) == 0 ? "set_seed" : "random_seed");
+        writer.name("category").value("ANY");
+        writer.name("is_completed").value(completed);
+        writer.name("is_coop").value(false);
+        writer.name("is_hardcore").value(false);
+        writer.name("default_gamemode").value(0);
+        writer.name("difficulty").value("easy");
+        writer.name("is_cheat_allowed").value(false);
+        writer.name("open_lan").nullValue();
+        writer.name("final_igt").value(finalRta - 500);
+        writer.name("final_rta").value(finalRta);
+        writer.name("retimed_igt").value(finalRta - 700);
+
+        writer.name("stats").beginObject();
+        writer.name("00000000-0000-0000-0000-000000000000").beginObject();
+        writer.name("stats").beginObject();
+        for (String type : STAT_TYPES) {
+            writer.name(type).beginObject();
+            for (int i = 0; i < 40 + random.nextInt(60); i++) {
+                writer.name("minecraft:stat_" + type.hashCode() % 97 + "_" + i).value(random.nextInt(5000));
+            }
+            writer.endObject();
+        }
+        writer.name("minecraft:crafted").beginObject();
+        writer.name("minecraft:ender_pearl").value(random.nextInt(24));
+        writer.name("minecraft:crafting_table").value(1);
+        writer.endObject();
+        writer.endObject();
+        writer.name("DataVersion").value(2230);
+        writer.endObject();
+        writer.endObject();
+
+        writer.name("timelines").beginArray();
+        for (long[] event : timeline) {
+            writer.beginObject();
+            writer.name("name").value(EVENTS[(int) event[0]]);
+            writer.name("igt").value(event[2]);
+            writer.name("rta").value(event[1]);
+            writer.endObject();
+        }
+        writer.endArray();
+
+        writer.name("advancements").beginObject();
+        for (int i = 0; i < 20 + random.nextInt(30); i++) {
+            writer.name("minecraft:recipes/misc/recipe_" + i).beginObject();
+            writer.name("complete").value(true);
+            writer.name("criteria").beginObject();
+            for (int c = 0; c < 1 + random.nextInt(4); c++) {
+                writer.name("has_item_" + c).beginObject();
+                writer.name("igt").value(random.nextInt(600_000));
+                writer.name("rta").value(random.nextInt(600_000));
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.name("igt").value(random.nextInt(600_000));
+            writer.name("rta").value(random.nextInt(600_000));
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+    }
+}
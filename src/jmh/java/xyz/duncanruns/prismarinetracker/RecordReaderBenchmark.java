@@ -0,0 +1,100 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to read one record with {@link RecordReader}, against reading the whole file into a Gson tree the way records
+ * used to be read. Each call reads the next file of the corpus, so the files come from the OS cache rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordReaderBenchmark {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * A folder of real records, or empty for the SpeedRunIGT records folder (generated if it doesn't have enough).
+     */
+    @Param({""})
+    public String recordsDir;
+    @Param({"2000"})
+    public int records;
+
+    private List<Path> paths;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        paths = RecordCorpus.get(recordsDir, records);
+    }
+
+    private Path nextPath() {
+        Path path = paths.get(next);
+        next = (next + 1) % paths.size();
+        return path;
+    }
+
+    @Benchmark
+    public RunRecord streaming() throws IOException {
+        return RecordReader.read(nextPath());
+    }
+
+    @Benchmark
+    public RunRecord gsonTree() throws IOException {
+        // FileUtil.readString then a JsonObject, as before the streaming reader
+        JsonObject json = GSON.fromJson(new String(Files.readAllBytes(nextPath()), StandardCharsets.UTF_8), JsonObject.class);
+        return fromTree(json);
+    }
+
+    /**
+     * Pulls the same fields out of the tree as the tracker used to.
+     */
+    private static RunRecord fromTree(JsonObject json) {
+        if (json.get("default_gamemode").getAsInt() != 0) return null;
+        if (!Objects.equals(json.get("run_type").getAsString(), "random_seed")) return null;
+        if (!Objects.equals(json.get("mc_version").getAsString(), "1.15.2")) return null;
+        if (json.get("is_coop").getAsBoolean()) return null;
+
+        long openToLanTime = 0;
+        boolean hasOpenedToLan = false;
+        JsonElement openLan = json.get("open_lan");
+        if (openLan != null && !openLan.isJsonNull()) {
+            openToLanTime = openLan.getAsLong();
+            hasOpenedToLan = true;
+        }
+        List<RunRecord.TimelineEvent> timelines = new ArrayList<>();
+        for (JsonElement event : json.get("timelines").getAsJsonArray()) {
+            JsonObject eventJson = event.getAsJsonObject();
+            timelines.add(new RunRecord.TimelineEvent(eventJson.get("name").getAsString(), eventJson.get("rta").getAsLong(), eventJson.get("igt").getAsLong()));
+        }
+
+        int craftedPearls = -1;
+        JsonObject stats = json.getAsJsonObject("stats");
+        Optional<String> uuid = stats.keySet().stream().findAny();
+        if (uuid.isPresent()) {
+            JsonObject crafted = stats.getAsJsonObject(uuid.get()).getAsJsonObject("stats").getAsJsonObject("minecraft:crafted");
+            if (crafted != null && crafted.has("minecraft:ender_pearl")) {
+                craftedPearls = crafted.get("minecraft:ender_pearl").getAsInt();
+            }
+        }
+        return new RunRecord(json.get("date").getAsLong(), json.get("world_name").getAsString(), json.get("final_rta").getAsLong(),
+                json.get("final_igt").getAsLong(), json.get("retimed_igt").getAsLong(), json.get("is_completed").getAsBoolean(),
+                json.get("is_cheat_allowed").getAsBoolean(), hasOpenedToLan, openToLanTime, craftedPearls, timelines);
+    }
+}
@@ -0,0 +1,165 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.Level;
+import xyz.duncanruns.julti.Julti;
+import xyz.duncanruns.julti.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent index of every saved session, sorted by time, with a few summary numbers for each so they can be listed
+ * and navigated by position without touching their files. Completed runs are indexed by the {@link RunStore}.
+ */
+public final class Catalog {
+    private static final Gson GSON = new Gson();
+    private static final Path CATALOG_PATH = PrismarineTracker.TRACKER_DIR.resolve("catalog.json");
+    private static final Pattern NUMBER_JSON_PATTERN = Pattern.compile("\\d+\\.json");
+
+    private static Data data = new Data();
+
+    private Catalog() {
+    }
+
+    /**
+     * Loads the catalog, rebuilding it from the sessions folder if it is missing or if files were added or removed
+     * outside the tracker.
+     */
+    public static synchronized void load() throws IOException {
+        if (Files.exists(CATALOG_PATH) && !isOutdated()) {
+            try {
+                Data loaded = GSON.fromJson(FileUtil.readString(CATALOG_PATH), Data.class);
+                if (loaded != null && loaded.sessions != null) {
+                    data = loaded;
+                    return;
+                }
+            } catch (JsonSyntaxException ignored) {
+            }
+        }
+        rebuild();
+        save();
+    }
+
+    private static boolean isOutdated() throws IOException {
+        Path dir = PrismarineTracker.SESSIONS_DIR;
+        return Files.isDirectory(dir) && Files.getLastModifiedTime(dir).toMillis() > Files.getLastModifiedTime(CATALOG_PATH).toMillis();
+    }
+
+    private static void rebuild() throws IOException {
+        Data rebuilt = new Data();
+        for (Path path : listNumberedJsons(PrismarineTracker.SESSIONS_DIR)) {
+            try {
+                PlaySession session = GSON.fromJson(FileUtil.readString(path), PlaySession.class);
+                if (session != null) rebuilt.sessions.add(new SessionEntry(session));
+            } catch (IOException | JsonSyntaxException e) {
+                Julti.log(Level.WARN, "(Prismarine Tracker) Skipping unreadable session file " + path.getFileName());
+            }
+        }
+        rebuilt.sessions.sort((a, b) -> Long.compare(a.time, b.time));
+        data = rebuilt;
+    }
+
+    static List<Path> listNumberedJsons(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(p -> NUMBER_JSON_PATTERN.matcher(p.getFileName().toString()).matches()).collect(Collectors.toList());
+        }
+    }
+
+    private static void save() throws IOException {
+        FileUtil.writeString(CATALOG_PATH, GSON.toJson(data));
+    }
+
+    /**
+     * Inserts or replaces the entry with the same time, keeping the list sorted.
+     */
+    private static <T> void put(List<T> list, T entry, ToLongFunction<T> timeGetter) {
+        int index = indexOf(list, timeGetter.applyAsLong(entry), timeGetter);
+        if (index >= 0) {
+            list.set(index, entry);
+        } else {
+            list.add(-index - 1, entry);
+        }
+    }
+
+    /**
+     * @return the index of the entry with the time, or (-(insertion point) - 1) if there isn't one
+     */
+    private static <T> int indexOf(List<T> list, long time, ToLongFunction<T> timeGetter) {
+        int low = 0;
+        int high = list.size() - 1;
+        // Entries almost always come in at the end
+        if (high >= 0 && timeGetter.applyAsLong(list.get(high)) < time) return -list.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midTime = timeGetter.applyAsLong(list.get(mid));
+            if (midTime < time) {
+                low = mid + 1;
+            } else if (midTime > time) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    public static synchronized void putSession(PlaySession session) throws IOException {
+        put(data.sessions, new SessionEntry(session), e -> e.time);
+        save();
+    }
+
+    public static synchronized void removeSession(long time) throws IOException {
+        int index = indexOf(data.sessions, time, e -> e.time);
+        if (index < 0) return;
+        data.sessions.remove(index);
+        save();
+    }
+
+    public static synchronized int getSessionCount() {
+        return data.sessions.size();
+    }
+
+    public static synchronized SessionEntry getSession(int index) {
+        return data.sessions.get(index);
+    }
+
+    /**
+     * @return the position of the session that started at the time, or -1 if it isn't in the catalog
+     */
+    public static synchronized int indexOfSession(long time) {
+        return Math.max(-1, indexOf(data.sessions, time, e -> e.time));
+    }
+
+    private static class Data {
+        private List<SessionEntry> sessions = new ArrayList<>();
+    }
+
+    public static class SessionEntry {
+        public long time;
+        public long timePlayedMillis;
+        public int resets;
+        public int runsWithGold;
+        public int runsFinished;
+
+        private SessionEntry() {
+        }
+
+        private SessionEntry(PlaySession session) {
+            time = session.sessionStartTime;
+            timePlayedMillis = session.toCalculatedStats().timePlayedMillis;
+            resets = session.resets;
+            runsWithGold = session.runsWithGold;
+            runsFinished = session.runsFinished;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.duncanruns.prismarinetracker;
+
+/**
+ * What one instance has done in a session: resets, how many runs got to each split and the average split times, summed
+ * from the records it is credited with. Like the rest of the session, totals are only changed and copied on the ingest
+ * thread while it holds the tracker's lock; everything else reads copies.
+ */
+public class InstanceTotals {
+    // Indexes into splitSums and splitCounts
+    public static final int MONUMENT = 0;
+    public static final int VILLAGE = 1;
+    public static final int NETHER = 2;
+    public static final int STRONGHOLD = 3;
+    public static final int FINISH = 4;
+    private static final int SPLITS = 5;
+
+    public int resets;
+    public int runsWithGold;
+    public int runsWithVillage;
+    public int runsWithNether;
+    public int runsWithStronghold;
+    public int runsFinished;
+
+    private long[] splitSums = new long[SPLITS];
+    private int[] splitCounts = new int[SPLITS];
+
+    private static int orZero(Integer amount) {
+        return amount == null ? 0 : amount;
+    }
+
+    private void addSplit(int split, Long time) {
+        if (time == null) return;
+        splitSums[split] += time;
+        splitCounts[split]++;
+    }
+
+    /**
+     * Adds a record's changes.
+     */
+    void add(SessionDelta delta) {
+        resets += orZero(delta.resets);
+        runsWithGold += orZero(delta.runsWithGold);
+        runsWithVillage += orZero(delta.runsWithVillage);
+        runsWithNether += orZero(delta.runsWithNether);
+        runsWithStronghold += orZero(delta.runsWithStronghold);
+        runsFinished += orZero(delta.runsFinished);
+
+        addSplit(MONUMENT, delta.goldBlockPickupTime);
+        addSplit(VILLAGE, delta.villageEnterTime);
+        addSplit(NETHER, delta.netherEnterTime);
+        addSplit(STRONGHOLD, delta.strongholdEnterTime);
+        addSplit(FINISH, delta.runFinishTime);
+    }
+
+    public InstanceTotals copy() {
+        InstanceTotals copy = new InstanceTotals();
+        copy.resets = resets;
+        copy.runsWithGold = runsWithGold;
+        copy.runsWithVillage = runsWithVillage;
+        copy.runsWithNether = runsWithNether;
+        copy.runsWithStronghold = runsWithStronghold;
+        copy.runsFinished = runsFinished;
+        copy.splitSums = splitSums.clone();
+        copy.splitCounts = splitCounts.clone();
+        return copy;
+    }
+
+    /**
+     * @param split one of the split constants
+     * @return the average time of the split, or 0 if it has no times
+     */
+    public long getAverageMillis(int split) {
+        return splitCounts[split] == 0 ? 0 : splitSums[split] / splitCounts[split];
+    }
+}
@@ -0,0 +1,209 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import xyz.duncanruns.julti.util.FileUtil;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses finished logs into one gzip segment per day ("archive/yyyy-MM-dd.log.gz"), by the timestamps of their
+ * lines.
+ * <p>
+ * Each archived log is appended to its segment as a new gzip member; {@link java.util.zip.GZIPInputStream} reads the
+ * members back as one continuous stream.
+ * <p>
+ * The index (index.json) is what commits an archive: it records each segment's length and the logs archived into it,
+ * and is written before the logs are deleted. If archiving is cut off before the index is written, whatever was
+ * appended past a segment's recorded length is cut off and the log is archived again. If it's cut off after, the log is
+ * only deleted. A segment that is on disk but missing from the index, because the index was lost, has no length that
+ * can be trusted and is only ever appended to.
+ */
+public final class LogArchiver {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Pattern LOG_FILE_PATTERN = Pattern.compile("\\d+\\.log");
+
+    private final Path logsDir;
+    private final Path archiveDir;
+    private final Path indexPath;
+
+    public LogArchiver(Path logsDir) {
+        this.logsDir = logsDir;
+        this.archiveDir = logsDir.resolve("archive");
+        this.indexPath = logsDir.resolve("index.json");
+    }
+
+    /**
+     * Archives every finished log in the logs folder except the given one.
+     *
+     * @return the amount of logs archived
+     */
+    public synchronized int archiveAllExcept(Path currentLog) throws IOException {
+        if (!Files.isDirectory(logsDir)) return 0;
+        List<Path> toArchive;
+        try (Stream<Path> stream = Files.list(logsDir)) {
+            toArchive = stream
+                    .filter(p -> LOG_FILE_PATTERN.matcher(p.getFileName().toString()).matches())
+                    .filter(p -> !p.equals(currentLog))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (toArchive.isEmpty()) return 0;
+
+        Map<String, Segment> index = readIndex();
+        deleteArchivedLogs(index);
+        toArchive.removeIf(log -> !Files.exists(log));
+        if (toArchive.isEmpty()) {
+            writeIndex(index);
+            return 0;
+        }
+        for (Path log : toArchive) {
+            archive(log, index);
+        }
+        writeIndex(index);
+        deleteArchivedLogs(index);
+        writeIndex(index);
+        return toArchive.size();
+    }
+
+    /**
+     * Archives a single finished log and deletes it.
+     */
+    public synchronized void archive(Path log) throws IOException {
+        Map<String, Segment> index = readIndex();
+        deleteArchivedLogs(index);
+        if (Files.exists(log)) {
+            archive(log, index);
+            writeIndex(index);
+            deleteArchivedLogs(index);
+        }
+        writeIndex(index);
+    }
+
+    /**
+     * Deletes the logs the index says were archived, which only still exist if archiving was cut off before deleting
+     * them, and forgets them.
+     */
+    private void deleteArchivedLogs(Map<String, Segment> index) throws IOException {
+        for (Segment segment : index.values()) {
+            if (segment.logs == null) continue;
+            for (String name : segment.logs) {
+                Files.deleteIfExists(logsDir.resolve(name));
+            }
+            segment.logs = null;
+        }
+    }
+
+    private void archive(Path log, Map<String, Segment> index) throws IOException {
+        long fileTime = getFileTime(log);
+
+        // Group lines by the day of their timestamp so each day's events end up in that day's segment
+        Map<LocalDate, List<String>> linesByDay = new TreeMap<>();
+        for (String line : Files.readAllLines(log, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) continue;
+            long time = parseTime(line, fileTime);
+            LocalDate day = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+            linesByDay.computeIfAbsent(day, d -> new ArrayList<>()).add(line);
+        }
+
+        Files.createDirectories(archiveDir);
+        for (Map.Entry<LocalDate, List<String>> entry : linesByDay.entrySet()) {
+            String segmentName = entry.getKey() + ".log.gz";
+            Path segmentPath = archiveDir.resolve(segmentName);
+            Segment segment = index.computeIfAbsent(segmentName, name -> new Segment(name, Files.exists(segmentPath) ? -1 : 0));
+            try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Anything past the recorded length was appended by an archive that never got into the index
+                if (segment.length >= 0 && channel.size() > segment.length) {
+                    channel.truncate(segment.length);
+                }
+                channel.position(channel.size());
+                try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Channels.newOutputStream(channel)), StandardCharsets.UTF_8)) {
+                    for (String line : entry.getValue()) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+            segment.length = Files.size(segmentPath);
+            if (segment.logs == null) segment.logs = new ArrayList<>();
+            segment.logs.add(log.getFileName().toString());
+        }
+    }
+
+    private static long getFileTime(Path log) {
+        String name = log.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseTime(String line, long fallback) {
+        int space = line.indexOf(' ');
+        if (space <= 0) return fallback;
+        try {
+            return Long.parseLong(line.substring(0, space));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private Map<String, Segment> readIndex() throws IOException {
+        Map<String, Segment> index = new TreeMap<>();
+        if (!Files.exists(indexPath)) return index;
+        try {
+            List<Segment> segments = GSON.fromJson(FileUtil.readString(indexPath), new TypeToken<List<Segment>>() {
+            }.getType());
+            if (segments != null) {
+                segments.forEach(s -> index.put(s.file, s));
+            }
+        } catch (JsonSyntaxException ignored) {
+            // Rebuilt going forwards, the segments already on disk are kept as they are
+        }
+        return index;
+    }
+
+    private void writeIndex(Map<String, Segment> index) throws IOException {
+        FileUtil.writeString(indexPath, GSON.toJson(new ArrayList<>(index.values())));
+    }
+
+    private static class Segment {
+        private String file;
+        /**
+         * The segment's size after the last archive that made it into the index, or -1 if it isn't known: for indexes from
+         * before it was recorded, and for segments that were already on disk when they were added to the index.
+         */
+        private long length = -1;
+        /**
+         * Logs archived into the segment that haven't been confirmed deleted yet.
+         */
+        private List<String> logs = null;
+
+        private Segment() {
+        }
+
+        private Segment(String file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+}
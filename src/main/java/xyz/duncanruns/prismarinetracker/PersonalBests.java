@@ -0,0 +1,182 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.Level;
+import xyz.duncanruns.julti.Julti;
+import xyz.duncanruns.julti.util.FileUtil;
+import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
+import xyz.duncanruns.prismarinetracker.util.OutputWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The personal best run, the best time for each split and the sum of best segments, kept up to date one completed run
+ * at a time so nothing needs to be re-read.
+ * <p>
+ * Splits are in route order, from monument to the final time. A segment is the time between two splits next to each
+ * other in that order, and is only counted when the run has both.
+ */
+public final class PersonalBests {
+    private static final Gson GSON = new Gson();
+    private static final Path BESTS_PATH = PrismarineTracker.TRACKER_DIR.resolve("bests.json");
+    private static final OutputWriter<Stats> OUTPUT_WRITER = new OutputWriter<>(PrismarineTracker.OUTPUT_DIR.resolve("bests"), Stats.class);
+
+    private static final String[] SPLIT_NAMES = {"Monument Mine", "Village Enter", "First Trade", "Nether Enter", "Fortress Enter", "Nether Exit", "Stronghold Enter", "End Enter", "Finish"};
+    private static final int SPLITS = SPLIT_NAMES.length;
+
+    private static State state = new State();
+
+    private PersonalBests() {
+    }
+
+    private static long[] getSplits(CompletedRun run) {
+        return new long[]{run.mineMonument, run.villageEnter, run.firstTrade, run.netherEnter, run.fortressEnter, run.netherExit, run.strongholdEnter, run.endEnter, getFinalTime(run)};
+    }
+
+    /**
+     * @return the retimed IGT, or the IGT if the run wasn't retimed
+     */
+    private static long getFinalTime(CompletedRun run) {
+        return run.completionRetime != -1 ? run.completionRetime : run.completionIGT;
+    }
+
+    /**
+     * Loads the bests, working them out from the {@link RunStore} if there is no saved state. The run store must be
+     * loaded first.
+     */
+    public static synchronized void load() throws IOException {
+        if (Files.exists(BESTS_PATH)) {
+            try {
+                State loaded = GSON.fromJson(FileUtil.readString(BESTS_PATH), State.class);
+                if (loaded != null && loaded.bestSplits != null && loaded.bestSplits.length == SPLITS && loaded.bestSegments != null && loaded.bestSegments.length == SPLITS) {
+                    state = loaded;
+                    OUTPUT_WRITER.write(state.toStats());
+                    return;
+                }
+            } catch (JsonSyntaxException ignored) {
+            }
+        }
+        state = new State();
+        for (int i = 0; i < RunStore.getRunCount(); i++) {
+            add(RunStore.getRun(i), false);
+        }
+        save();
+    }
+
+    private static void save() throws IOException {
+        FileUtil.writeString(BESTS_PATH, GSON.toJson(state));
+        OUTPUT_WRITER.write(state.toStats());
+    }
+
+    /**
+     * Counts a completed run towards the bests, and saves them if any improved.
+     *
+     * @param announce whether to log new bests, which is left off when many old runs are being added at once
+     */
+    public static synchronized void update(CompletedRun run, boolean announce) throws IOException {
+        if (add(run, announce)) save();
+    }
+
+    private static boolean add(CompletedRun run, boolean announce) {
+        boolean improved = false;
+        long finalTime = getFinalTime(run);
+        if (finalTime > 0 && (state.pb == -1 || finalTime < state.pb)) {
+            if (announce) {
+                Julti.log(Level.INFO, "(Prismarine Tracker) New personal best! " + FormattingUtil.formatMillis(finalTime)
+                        + (state.pb == -1 ? "" : " (previous: " + FormattingUtil.formatMillis(state.pb) + ")"));
+            }
+            state.pb = finalTime;
+            state.pbDate = run.date;
+            improved = true;
+        }
+
+        long[] splits = getSplits(run);
+        for (int i = 0; i < SPLITS; i++) {
+            if (splits[i] <= 0) continue;
+            if (state.bestSplits[i] == -1 || splits[i] < state.bestSplits[i]) {
+                // The finish is already announced as a personal best
+                if (announce && i != SPLITS - 1) {
+                    Julti.log(Level.INFO, "(Prismarine Tracker) New best " + SPLIT_NAMES[i] + " split: " + FormattingUtil.formatMillis(splits[i]));
+                }
+                state.bestSplits[i] = splits[i];
+                improved = true;
+            }
+            long segment = i == 0 ? splits[0] : splits[i - 1] > 0 && splits[i] >= splits[i - 1] ? splits[i] - splits[i - 1] : -1;
+            if (segment >= 0 && (state.bestSegments[i] == -1 || segment < state.bestSegments[i])) {
+                state.bestSegments[i] = segment;
+                improved = true;
+            }
+        }
+        return improved;
+    }
+
+    public static synchronized Stats getStats() {
+        return state.toStats();
+    }
+
+    private static class State {
+        private long pb = -1;
+        private long pbDate = -1;
+        private long[] bestSplits = filled(SPLITS);
+        private long[] bestSegments = filled(SPLITS);
+
+        private static long[] filled(int length) {
+            long[] out = new long[length];
+            Arrays.fill(out, -1);
+            return out;
+        }
+
+        /**
+         * @return the sum of best segments, or -1 if a segment has never been done
+         */
+        private long getSumOfBest() {
+            long sum = 0;
+            for (long segment : bestSegments) {
+                if (segment == -1) return -1;
+                sum += segment;
+            }
+            return sum;
+        }
+
+        private Stats toStats() {
+            Stats stats = new Stats();
+            stats.pbFormatted = formatOrNone(pb);
+            stats.pbDateFormatted = pbDate == -1 ? "N/A" : FormattingUtil.formatDate(pbDate);
+            stats.sumOfBestFormatted = formatOrNone(getSumOfBest());
+            stats.bestMonumentFormatted = formatOrNone(bestSplits[0]);
+            stats.bestVillageFormatted = formatOrNone(bestSplits[1]);
+            stats.bestTradeFormatted = formatOrNone(bestSplits[2]);
+            stats.bestNetherFormatted = formatOrNone(bestSplits[3]);
+            stats.bestFortressFormatted = formatOrNone(bestSplits[4]);
+            stats.bestNetherExitFormatted = formatOrNone(bestSplits[5]);
+            stats.bestStrongholdFormatted = formatOrNone(bestSplits[6]);
+            stats.bestEndFormatted = formatOrNone(bestSplits[7]);
+            return stats;
+        }
+
+        private static String formatOrNone(long millis) {
+            return millis == -1 ? "N/A" : FormattingUtil.formatMillis(millis);
+        }
+    }
+
+    /**
+     * The bests as shown in the GUI and written to the output files.
+     */
+    public static class Stats {
+        public String pbFormatted;
+        public String pbDateFormatted;
+        public String sumOfBestFormatted;
+        public String bestMonumentFormatted;
+        public String bestVillageFormatted;
+        public String bestTradeFormatted;
+        public String bestNetherFormatted;
+        public String bestFortressFormatted;
+        public String bestNetherExitFormatted;
+        public String bestStrongholdFormatted;
+        public String bestEndFormatted;
+    }
+}
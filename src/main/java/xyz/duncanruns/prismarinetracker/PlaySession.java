@@ -1,14 +1,28 @@
 package xyz.duncanruns.prismarinetracker;
 
 import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
-
-import java.util.LinkedList;
-import java.util.List;
-
-public class PlaySession {
-    public long sessionStartTime = System.currentTimeMillis();
-    public long sessionEndTime = sessionStartTime;
-    public long lastActivity = sessionStartTime;
+import xyz.duncanruns.prismarinetracker.util.LongSeries;
+import xyz.duncanruns.prismarinetracker.util.OutputWriter;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PlaySession implements SessionView {
+    // Where each split's average and distribution go in CalculatedStats
+    private static final SplitFields MONUMENT = new SplitFields("Monument");
+    private static final SplitFields VILLAGE = new SplitFields("Village");
+    private static final SplitFields NETHER = new SplitFields("Nether");
+    private static final SplitFields FORTRESS = new SplitFields("Fortress");
+    private static final SplitFields NETHER_EXIT = new SplitFields("NetherExit");
+    private static final SplitFields STRONGHOLD = new SplitFields("Stronghold");
+    private static final SplitFields END = new SplitFields("End");
+    private static final SplitFields FINISH = new SplitFields("Finish");
+
+    public long sessionStartTime;
+    public long sessionEndTime;
+    public long lastActivity;
     public int resets = 0;
 
     // Amounts
@@ -25,77 +39,252 @@ public class PlaySession {
 
     // Times
     // (Regular insomniac only - mine gold block comes before trading)
-    public List<Long> goldBlockPickupTimes = new LinkedList<>();
-    public List<Long> villageEnterTimes = new LinkedList<>();
-    public List<Long> netherEnterTimes = new LinkedList<>();
-    public List<Long> fortressEnterTimes = new LinkedList<>();
-    public List<Long> netherExitTimes = new LinkedList<>();
+    public LongSeries goldBlockPickupTimes = new LongSeries();
+    public LongSeries villageEnterTimes = new LongSeries();
+    public LongSeries netherEnterTimes = new LongSeries();
+    public LongSeries fortressEnterTimes = new LongSeries();
+    public LongSeries netherExitTimes = new LongSeries();
 
     // (For any runs)
-    public List<Long> strongholdEnterTimes = new LinkedList<>();
-    public List<Long> endEnterTimes = new LinkedList<>();
-    public List<Long> runFinishTimes = new LinkedList<>();
+    public LongSeries strongholdEnterTimes = new LongSeries();
+    public LongSeries endEnterTimes = new LongSeries();
+    public LongSeries runFinishTimes = new LongSeries();
+
+    public LongSeries breaks = new LongSeries();
+
+    // How much of the session journal this snapshot already contains, see SessionJournal
+    public int journalGeneration = 0;
+    public int journalEntries = 0;
+
+    // Per-instance totals by instance number, only touched on the ingest thread, see InstanceTotals
+    private HashMap<Integer, InstanceTotals> instanceStats = new HashMap<>();
+
+    // Running totals of the times above, not saved; they are rebuilt from the series the first time they're needed.
+    private transient boolean statsBuilt = false;
+    private final transient TimeStats goldBlockPickupStats = new TimeStats(true);
+    private final transient TimeStats villageEnterStats = new TimeStats(true);
+    private final transient TimeStats netherEnterStats = new TimeStats(true);
+    private final transient TimeStats fortressEnterStats = new TimeStats(true);
+    private final transient TimeStats netherExitStats = new TimeStats(true);
+    private final transient TimeStats strongholdEnterStats = new TimeStats(true);
+    private final transient TimeStats endEnterStats = new TimeStats(true);
+    private final transient TimeStats runFinishStats = new TimeStats(true);
+    private final transient TimeStats breakStats = new TimeStats();
+
+    public PlaySession() {
+        this(System.currentTimeMillis());
+    }
+
+    public PlaySession(long sessionStartTime) {
+        this.sessionStartTime = sessionStartTime;
+        sessionEndTime = sessionStartTime;
+        lastActivity = sessionStartTime;
+    }
+
+    @Override
+    public long getSessionStartTime() {
+        return sessionStartTime;
+    }
+
+    private static void rebuildStats(LongSeries times, TimeStats stats) {
+        stats.clear();
+        for (int i = 0; i < times.size(); i++) {
+            stats.add(times.get(i));
+        }
+    }
+
+    private static void add(LongSeries times, TimeStats stats, long time) {
+        times.add(time);
+        stats.add(time);
+    }
+
+    private void ensureStatsBuilt() {
+        if (statsBuilt) return;
+        rebuildStats(goldBlockPickupTimes, goldBlockPickupStats);
+        rebuildStats(villageEnterTimes, villageEnterStats);
+        rebuildStats(netherEnterTimes, netherEnterStats);
+        rebuildStats(fortressEnterTimes, fortressEnterStats);
+        rebuildStats(netherExitTimes, netherExitStats);
+        rebuildStats(strongholdEnterTimes, strongholdEnterStats);
+        rebuildStats(endEnterTimes, endEnterStats);
+        rebuildStats(runFinishTimes, runFinishStats);
+        rebuildStats(breaks, breakStats);
+        statsBuilt = true;
+    }
+
+    public void addGoldBlockPickupTime(long time) {
+        ensureStatsBuilt();
+        add(goldBlockPickupTimes, goldBlockPickupStats, time);
+    }
+
+    public void addVillageEnterTime(long time) {
+        ensureStatsBuilt();
+        add(villageEnterTimes, villageEnterStats, time);
+    }
+
+    public void addNetherEnterTime(long time) {
+        ensureStatsBuilt();
+        add(netherEnterTimes, netherEnterStats, time);
+    }
+
+    public void addFortressEnterTime(long time) {
+        ensureStatsBuilt();
+        add(fortressEnterTimes, fortressEnterStats, time);
+    }
+
+    public void addNetherExitTime(long time) {
+        ensureStatsBuilt();
+        add(netherExitTimes, netherExitStats, time);
+    }
+
+    public void addStrongholdEnterTime(long time) {
+        ensureStatsBuilt();
+        add(strongholdEnterTimes, strongholdEnterStats, time);
+    }
+
+    public void addEndEnterTime(long time) {
+        ensureStatsBuilt();
+        add(endEnterTimes, endEnterStats, time);
+    }
+
+    public void addRunFinishTime(long time) {
+        ensureStatsBuilt();
+        add(runFinishTimes, runFinishStats, time);
+    }
+
+    public void addBreak(long time) {
+        ensureStatsBuilt();
+        add(breaks, breakStats, time);
+    }
 
-    public List<Long> breaks = new LinkedList<>();
+    private static int orZero(Integer amount) {
+        return amount == null ? 0 : amount;
+    }
 
+    public void apply(SessionDelta delta) {
+        sessionEndTime = delta.time;
+
+        resets += orZero(delta.resets);
+        runsWithGold += orZero(delta.runsWithGold);
+        runsWithVillage += orZero(delta.runsWithVillage);
+        runsWithTrading += orZero(delta.runsWithTrading);
+        runsWith10Pearls += orZero(delta.runsWith10Pearls);
+        runsWithNether += orZero(delta.runsWithNether);
+        runsWithFort += orZero(delta.runsWithFort);
+        runsWithNetherExit += orZero(delta.runsWithNetherExit);
+        runsWithStronghold += orZero(delta.runsWithStronghold);
+        runsWithEndEnter += orZero(delta.runsWithEndEnter);
+        runsFinished += orZero(delta.runsFinished);
+
+        if (delta.goldBlockPickupTime != null) addGoldBlockPickupTime(delta.goldBlockPickupTime);
+        if (delta.villageEnterTime != null) addVillageEnterTime(delta.villageEnterTime);
+        if (delta.netherEnterTime != null) addNetherEnterTime(delta.netherEnterTime);
+        if (delta.fortressEnterTime != null) addFortressEnterTime(delta.fortressEnterTime);
+        if (delta.netherExitTime != null) addNetherExitTime(delta.netherExitTime);
+        if (delta.strongholdEnterTime != null) addStrongholdEnterTime(delta.strongholdEnterTime);
+        if (delta.endEnterTime != null) addEndEnterTime(delta.endEnterTime);
+        if (delta.runFinishTime != null) addRunFinishTime(delta.runFinishTime);
+        if (delta.breakTime != null) addBreak(delta.breakTime);
+
+        if (delta.lastActivity != null) lastActivity = delta.lastActivity;
+
+        if (delta.instance != null) {
+            instanceStats.computeIfAbsent(delta.instance, k -> new InstanceTotals()).add(delta);
+        }
+    }
+
+    @Override
+    public Map<Integer, InstanceTotals> getInstanceStats() {
+        Map<Integer, InstanceTotals> out = new TreeMap<>();
+        instanceStats.forEach((instance, totals) -> out.put(instance, totals.copy()));
+        return out;
+    }
+
+    @Override
     public CalculatedStats toCalculatedStats() {
+        ensureStatsBuilt();
         CalculatedStats cs = new CalculatedStats();
 
         cs.sessionLengthMillis = lastActivity - sessionStartTime;
-        cs.timePlayedMillis = cs.sessionLengthMillis;
-        for (Long b : breaks) {
-            cs.timePlayedMillis -= b;
-        }
+        cs.timePlayedMillis = cs.sessionLengthMillis - breakStats.getSum();
         cs.sessionLengthFormatted = FormattingUtil.formatMillis(cs.sessionLengthMillis);
         cs.timePlayedFormatted = FormattingUtil.formatMillis(cs.timePlayedMillis);
 
-        cs.breaks = breaks.size();
-        cs.averageBreakMillis = FormattingUtil.getAverageTime(breaks);
+        cs.breaks = breakStats.getCount();
+        cs.averageBreakMillis = breakStats.getAverage();
         cs.averageBreakFormatted = FormattingUtil.formatMillis(cs.averageBreakMillis);
 
         cs.resets = resets;
 
         cs.runsWithMonument = runsWithGold;
-        cs.averageMonumentMillis = FormattingUtil.getAverageTime(goldBlockPickupTimes);
-        cs.averageMonumentFormatted = FormattingUtil.formatMillis(cs.averageMonumentMillis);
+        MONUMENT.fill(cs, goldBlockPickupStats);
         cs.monumentsPerHour = FormattingUtil.getPerHour(cs.runsWithMonument, cs.timePlayedMillis);
 
         cs.runsWithVillage = runsWithVillage;
-        cs.averageVillageMillis = FormattingUtil.getAverageTime(villageEnterTimes);
-        cs.averageVillageFormatted = FormattingUtil.formatMillis(cs.averageVillageMillis);
+        VILLAGE.fill(cs, villageEnterStats);
         cs.villagesPerHour = FormattingUtil.getPerHour(cs.runsWithVillage, cs.timePlayedMillis);
 
         cs.runsWithTrading = runsWithTrading;
         cs.runsWith10Pearls = runsWith10Pearls;
 
         cs.runsWithNether = runsWithNether;
-        cs.averageNetherMillis = FormattingUtil.getAverageTime(netherEnterTimes);
-        cs.averageNetherFormatted = FormattingUtil.formatMillis(cs.averageNetherMillis);
+        NETHER.fill(cs, netherEnterStats);
 
         cs.runsWithFortress = runsWithFort;
-        cs.averageFortressMillis = FormattingUtil.getAverageTime(fortressEnterTimes);
-        cs.averageFortressFormatted = FormattingUtil.formatMillis(cs.averageFortressMillis);
+        FORTRESS.fill(cs, fortressEnterStats);
 
         cs.runsWithNetherExit = runsWithNetherExit;
-        cs.averageNetherExitMillis = FormattingUtil.getAverageTime(netherExitTimes);
-        cs.averageNetherExitFormatted = FormattingUtil.formatMillis(cs.averageNetherExitMillis);
+        NETHER_EXIT.fill(cs, netherExitStats);
 
         cs.runsWithStronghold = runsWithStronghold;
-        cs.averageStrongholdMillis = FormattingUtil.getAverageTime(strongholdEnterTimes);
-        cs.averageStrongholdFormatted = FormattingUtil.formatMillis(cs.averageStrongholdMillis);
+        STRONGHOLD.fill(cs, strongholdEnterStats);
 
         cs.runsWithEnd = runsWithEndEnter;
-        cs.averageEndMillis = FormattingUtil.getAverageTime(endEnterTimes);
-        cs.averageEndFormatted = FormattingUtil.formatMillis(cs.averageEndMillis);
+        END.fill(cs, endEnterStats);
 
         cs.runsWithFinish = runsFinished;
-        cs.averageFinishMillis = FormattingUtil.getAverageTime(runFinishTimes);
-        cs.averageFinishFormatted = FormattingUtil.formatMillis(cs.averageFinishMillis);
+        FINISH.fill(cs, runFinishStats);
 
         return cs;
     }
 
-    public static class CalculatedStats {
+    /**
+     * The average, best, p10, median and p90 fields of one split in {@link CalculatedStats}, which are all named the same
+     * way ("p10" + split + "Millis", "p10" + split + "Formatted"). Looked up once, so filling them in is only a few field
+     * writes.
+     */
+    private static final class SplitFields {
+        private static final String[] PREFIXES = {"average", "best", "p10", "median", "p90"};
+
+        private final Field[] millis = new Field[PREFIXES.length];
+        private final Field[] formatted = new Field[PREFIXES.length];
+
+        private SplitFields(String split) {
+            try {
+                for (int i = 0; i < PREFIXES.length; i++) {
+                    millis[i] = CalculatedStats.class.getField(PREFIXES[i] + split + "Millis");
+                    formatted[i] = CalculatedStats.class.getField(PREFIXES[i] + split + "Formatted");
+                }
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void fill(CalculatedStats cs, TimeStats stats) {
+            long[] percentiles = stats.getPercentiles(10, 50, 90);
+            long[] values = {stats.getAverage(), stats.getBest(), percentiles[0], percentiles[1], percentiles[2]};
+            try {
+                for (int i = 0; i < PREFIXES.length; i++) {
+                    millis[i].setLong(cs, values[i]);
+                    formatted[i].set(cs, FormattingUtil.formatMillis(values[i]));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static class CalculatedStats implements Cloneable {
 
         public long sessionLengthMillis;
         public String sessionLengthFormatted;
@@ -112,11 +301,35 @@ public class PlaySession {
         public int runsWithMonument;
         public long averageMonumentMillis;
         public String averageMonumentFormatted;
+        @OutputWriter.NotWritten
+        public long bestMonumentMillis;
+        public String bestMonumentFormatted;
+        @OutputWriter.NotWritten
+        public long p10MonumentMillis;
+        public String p10MonumentFormatted;
+        @OutputWriter.NotWritten
+        public long medianMonumentMillis;
+        public String medianMonumentFormatted;
+        @OutputWriter.NotWritten
+        public long p90MonumentMillis;
+        public String p90MonumentFormatted;
         public String monumentsPerHour;
 
         public int runsWithVillage;
         public long averageVillageMillis;
         public String averageVillageFormatted;
+        @OutputWriter.NotWritten
+        public long bestVillageMillis;
+        public String bestVillageFormatted;
+        @OutputWriter.NotWritten
+        public long p10VillageMillis;
+        public String p10VillageFormatted;
+        @OutputWriter.NotWritten
+        public long medianVillageMillis;
+        public String medianVillageFormatted;
+        @OutputWriter.NotWritten
+        public long p90VillageMillis;
+        public String p90VillageFormatted;
         public String villagesPerHour;
 
         public int runsWithTrading;
@@ -125,28 +338,108 @@ public class PlaySession {
         public int runsWithNether;
         public long averageNetherMillis;
         public String averageNetherFormatted;
+        @OutputWriter.NotWritten
+        public long bestNetherMillis;
+        public String bestNetherFormatted;
+        @OutputWriter.NotWritten
+        public long p10NetherMillis;
+        public String p10NetherFormatted;
+        @OutputWriter.NotWritten
+        public long medianNetherMillis;
+        public String medianNetherFormatted;
+        @OutputWriter.NotWritten
+        public long p90NetherMillis;
+        public String p90NetherFormatted;
 
         public int runsWithFortress;
         public long averageFortressMillis;
         public String averageFortressFormatted;
+        @OutputWriter.NotWritten
+        public long bestFortressMillis;
+        public String bestFortressFormatted;
+        @OutputWriter.NotWritten
+        public long p10FortressMillis;
+        public String p10FortressFormatted;
+        @OutputWriter.NotWritten
+        public long medianFortressMillis;
+        public String medianFortressFormatted;
+        @OutputWriter.NotWritten
+        public long p90FortressMillis;
+        public String p90FortressFormatted;
 
         public int runsWithNetherExit;
         public long averageNetherExitMillis;
         public String averageNetherExitFormatted;
+        @OutputWriter.NotWritten
+        public long bestNetherExitMillis;
+        public String bestNetherExitFormatted;
+        @OutputWriter.NotWritten
+        public long p10NetherExitMillis;
+        public String p10NetherExitFormatted;
+        @OutputWriter.NotWritten
+        public long medianNetherExitMillis;
+        public String medianNetherExitFormatted;
+        @OutputWriter.NotWritten
+        public long p90NetherExitMillis;
+        public String p90NetherExitFormatted;
 
         public int runsWithStronghold;
         public long averageStrongholdMillis;
         public String averageStrongholdFormatted;
+        @OutputWriter.NotWritten
+        public long bestStrongholdMillis;
+        public String bestStrongholdFormatted;
+        @OutputWriter.NotWritten
+        public long p10StrongholdMillis;
+        public String p10StrongholdFormatted;
+        @OutputWriter.NotWritten
+        public long medianStrongholdMillis;
+        public String medianStrongholdFormatted;
+        @OutputWriter.NotWritten
+        public long p90StrongholdMillis;
+        public String p90StrongholdFormatted;
 
         public int runsWithEnd;
         public long averageEndMillis;
         public String averageEndFormatted;
+        @OutputWriter.NotWritten
+        public long bestEndMillis;
+        public String bestEndFormatted;
+        @OutputWriter.NotWritten
+        public long p10EndMillis;
+        public String p10EndFormatted;
+        @OutputWriter.NotWritten
+        public long medianEndMillis;
+        public String medianEndFormatted;
+        @OutputWriter.NotWritten
+        public long p90EndMillis;
+        public String p90EndFormatted;
 
         public int runsWithFinish;
         public long averageFinishMillis;
         public String averageFinishFormatted;
+        @OutputWriter.NotWritten
+        public long bestFinishMillis;
+        public String bestFinishFormatted;
+        @OutputWriter.NotWritten
+        public long p10FinishMillis;
+        public String p10FinishFormatted;
+        @OutputWriter.NotWritten
+        public long medianFinishMillis;
+        public String medianFinishFormatted;
+        @OutputWriter.NotWritten
+        public long p90FinishMillis;
+        public String p90FinishFormatted;
 
         private CalculatedStats() {
         }
+
+        CalculatedStats copy() {
+            try {
+                return (CalculatedStats) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
     }
 }
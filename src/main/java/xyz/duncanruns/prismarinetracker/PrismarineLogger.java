@@ -3,42 +3,107 @@ package xyz.duncanruns.prismarinetracker;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PrismarineLogger {
     private static final Path FOLDER_PATH = PrismarineTracker.TRACKER_DIR.resolve("logs");
-    private static final Path CURRENT_PATH = FOLDER_PATH.resolve(System.currentTimeMillis() + ".log");
-    private static RandomAccessFile file = null;
+    private static final LogArchiver ARCHIVER = new LogArchiver(FOLDER_PATH);
+    private static final int FLUSH_SIZE = 256;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    // A log is finished and archived once it reaches either limit
+    private static final long MAX_LOG_SIZE = 4 * 1024 * 1024;
+    private static final long MAX_LOG_AGE_MILLIS = 24 * 60 * 60 * 1000;
 
-    private static final Queue<Pair<Long, String>> QUEUE = new LinkedList<>();
+    private static long currentStart = System.currentTimeMillis();
+    private static Path currentPath = FOLDER_PATH.resolve(currentStart + ".log");
+    private static FileChannel file = null;
+
+    // Any thread can queue, only one thread at a time flushes (synchronized on the class)
+    private static final Queue<Pair<Long, String>> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger QUEUE_SIZE = new AtomicInteger();
+    private static volatile long lastFlush = System.currentTimeMillis();
+
+    /**
+     * Archives the logs left over from previous launches.
+     *
+     * @return the amount of logs archived
+     */
+    public static synchronized int archiveOldLogs() throws IOException {
+        return ARCHIVER.archiveAllExcept(currentPath);
+    }
 
     public static void queueLog(long time, String msg) {
         QUEUE.add(Pair.of(time, msg));
+        QUEUE_SIZE.incrementAndGet();
     }
 
-    public static void flushLog() throws IOException {
-        if (QUEUE.isEmpty()) return;
-        if (file == null) {
-            FOLDER_PATH.toFile().mkdirs();
-            file = new RandomAccessFile(CURRENT_PATH.toFile(), "rw");
+    /**
+     * @return true if enough entries are queued, or they have been waiting long enough, that they should be flushed
+     */
+    public static boolean isFlushDue() {
+        int size = QUEUE_SIZE.get();
+        return size >= FLUSH_SIZE || (size > 0 && System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS);
+    }
+
+    public static void flushLogIfDue() throws IOException {
+        if (isFlushDue()) {
+            flushLog(false);
         }
-        QUEUE.stream().sorted(Comparator.comparingLong(Pair::getLeft)).forEach(p -> {
-            try {
-                write(p.getLeft() + " " + p.getRight().trim());
-            } catch (IOException ignored) {
-            }
-        });
-        QUEUE.clear();
     }
 
-    private static void write(String msg) throws IOException {
+    /**
+     * Writes everything queued so far, sorted by time, in a single write.
+     *
+     * @param sync whether to also wait for the write to reach the disk
+     */
+    public static synchronized void flushLog(boolean sync) throws IOException {
+        lastFlush = System.currentTimeMillis();
+        List<Pair<Long, String>> toWrite = new ArrayList<>(QUEUE_SIZE.get());
+        Pair<Long, String> p;
+        while ((p = QUEUE.poll()) != null) {
+            toWrite.add(p);
+        }
+        QUEUE_SIZE.addAndGet(-toWrite.size());
+        if (toWrite.isEmpty()) return;
+
         if (file == null) {
-            return;
+            FOLDER_PATH.toFile().mkdirs();
+            file = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        toWrite.sort(Comparator.comparingLong(Pair::getLeft));
+        StringBuilder builder = new StringBuilder(toWrite.size() * 48);
+        for (Pair<Long, String> entry : toWrite) {
+            builder.append(entry.getLeft()).append(' ').append(entry.getRight().trim()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            file.write(buffer);
+        }
+        if (sync) {
+            file.force(false);
         }
-        file.writeBytes(msg + "\n");
+
+        if (file.size() >= MAX_LOG_SIZE || System.currentTimeMillis() - currentStart >= MAX_LOG_AGE_MILLIS) {
+            rotate();
+        }
+    }
+
+    private static void rotate() throws IOException {
+        file.close();
+        file = null;
+        Path finished = currentPath;
+        currentStart = System.currentTimeMillis();
+        currentPath = FOLDER_PATH.resolve(currentStart + ".log");
+        ARCHIVER.archive(finished);
     }
 }
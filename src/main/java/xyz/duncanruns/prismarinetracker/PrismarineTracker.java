@@ -10,17 +10,47 @@ import xyz.duncanruns.julti.management.InstanceManager;
 import xyz.duncanruns.julti.plugin.PluginEvents;
 import xyz.duncanruns.julti.util.ExceptionUtil;
 import xyz.duncanruns.julti.util.FileUtil;
+import xyz.duncanruns.prismarinetracker.TimelineEvents.Event;
+import xyz.duncanruns.prismarinetracker.util.OutputWriter;
 
 import java.awt.*;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 public class PrismarineTracker {
+    // Only changed while holding the tracker's lock, other threads read the published snapshot
     private static PlaySession session = new PlaySession();
+    private static long sessionVersion = 0;
+    private static final AtomicReference<SessionSnapshot> SNAPSHOT = new AtomicReference<>(new SessionSnapshot(sessionVersion, session));
+    private static long outputVersion = -1;
+    private static final CountDownLatch STARTED = new CountDownLatch(1);
+    private static volatile String startupTimings = null;
+    // Set when loading something failed at startup, after which nothing is saved so the files aren't written over
+    private static volatile boolean startupFailed = false;
     private static WatchService recordsWatcher = null;
+    private static Thread watcherThread = null;
+    private static ScheduledExecutorService ingestExecutor = null;
+    private static final AtomicBoolean TICK_RUNNING = new AtomicBoolean(false);
+    /**
+     * With -Dprismarinetracker.ingest=poll, the records watcher is polled by the tick every 500 ms instead of being
+     * waited on by a thread of its own, so nothing but the ingest thread ever touches it.
+     */
+    private static final boolean POLL_RECORDS = "poll".equals(System.getProperty("prismarinetracker.ingest"));
 
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     public static final Path TRACKER_DIR = JultiOptions.getJultiDir().resolve("prismarinetracker");
@@ -28,74 +58,286 @@ public class PrismarineTracker {
     public static final Path OUTPUT_DIR = TRACKER_DIR.resolve("output");
     private static final Path SESSION_FILE_PATH = TRACKER_DIR.resolve("session.json");
     public static final Path RUNS_DIR = TRACKER_DIR.resolve("runs");
-    private static final Path RECORDS_FOLDER = Paths.get(System.getProperty("user.home")).resolve("speedrunigt").resolve("records");
+    private static final OutputWriter<PlaySession.CalculatedStats> OUTPUT_WRITER = new OutputWriter<>(OUTPUT_DIR, PlaySession.CalculatedStats.class);
+    static final Path RECORDS_FOLDER = Paths.get(System.getProperty("user.home")).resolve("speedrunigt").resolve("records");
     public static final Set<String> MANUAL_RESET_CODES = new HashSet<>(Arrays.asList("wallReset", "wallSingleReset", "wallFocusReset", "reset"));
     private static long lastTick = 0;
     private static boolean benchmarkWasRunning = false;
+    private static volatile boolean discardRecords = false;
+    private static volatile long discardRecordsBefore = 0;
+    private static volatile boolean watcherOverflowed = false;
     private static boolean shouldSave = false;
-    private static boolean startedPlaying = false;
+    private static volatile boolean startedPlaying = false;
+    private static long lastSnapshotTime = System.currentTimeMillis();
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 300_000;
+    private static final int SNAPSHOT_INTERVAL_ENTRIES = 1000;
 
-    private static int activeInstance;
+    // Written by tick, read when processing records
+    private static volatile int activeInstance;
     private static long activeInstanceStart;
-    private static int last1MinuteInstance;
+    private static volatile int last1MinuteInstance;
+
+    // Reused for every record, only touched by processRecord which runs on the ingest thread
+    private static final TimelineEvents TIMELINE_EVENTS = new TimelineEvents();
+
+    private static final List<Runnable> SESSION_LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records waiting to be read again, with their modification time, or {@link Long#MIN_VALUE} if that couldn't be read
+     * either. The high-water mark is held back below them so they are caught up on if the tracker stops first. Only used
+     * by the synchronized record processing.
+     */
+    private static final Map<Path, Long> PENDING_RETRIES = new HashMap<>();
+    private static long heldBackHighWaterMark = 0;
 
     private static long timeMin = Long.MAX_VALUE;
     private static long timeMax = 0;
 
+    // Tick stats
+    private static final AtomicLong TICKS_RUN = new AtomicLong();
+    private static final AtomicLong TICKS_SKIPPED = new AtomicLong();
+    private static final AtomicLong TICK_NANOS_TOTAL = new AtomicLong();
+    private static final AtomicLong TICK_NANOS_MAX = new AtomicLong();
+
+    // Ingestion stats
+    private static final AtomicLong BATCHES_RUN = new AtomicLong();
+    private static final AtomicLong BATCH_NANOS_TOTAL = new AtomicLong();
+    private static final AtomicLong BATCH_NANOS_MAX = new AtomicLong();
+    private static final AtomicLong RECORDS_PROCESSED = new AtomicLong();
+    private static final AtomicLong LATENCY_MILLIS_TOTAL = new AtomicLong();
+    private static final AtomicLong LATENCY_MILLIS_MAX = new AtomicLong();
+    private static final AtomicLong DUPLICATES_SKIPPED = new AtomicLong();
+    private static final AtomicLong RETRIES_SCHEDULED = new AtomicLong();
+
+    // Delays before each re-read of a record that couldn't be read, usually because it was still being written
+    private static final long[] RETRY_DELAYS_MILLIS = {250, 500, 1000, 2000, 4000};
+
     /**
-     * Returned object should not be modified.
+     * The current session as of the last published snapshot.
      */
-    public static PlaySession getCurrentSession() {
-        return session;
+    public static SessionView getCurrentSession() {
+        return SNAPSHOT.get();
     }
 
+    public static SessionSnapshot getSessionSnapshot() {
+        return SNAPSHOT.get();
+    }
+
+    /**
+     * Publishes the session's numbers for other threads to read, if it has changed since the last one.
+     */
+    private static synchronized void publishSession() {
+        if (SNAPSHOT.get().version == sessionVersion) return;
+        SNAPSHOT.set(new SessionSnapshot(sessionVersion, session));
+    }
+
+    /**
+     * Adds a listener to be called after the current session changes. Listeners are called from the tracker's threads
+     * and should return quickly.
+     */
+    public static void addSessionListener(Runnable listener) {
+        SESSION_LISTENERS.add(listener);
+    }
+
+    public static void removeSessionListener(Runnable listener) {
+        SESSION_LISTENERS.remove(listener);
+    }
+
+    private static void notifySessionListeners() {
+        for (Runnable listener : SESSION_LISTENERS) {
+            listener.run();
+        }
+    }
+
+    /**
+     * A human-readable summary of how the tracker's record ingestion has been behaving.
+     */
+    public static String getStatus() {
+        long ticksRun = TICKS_RUN.get();
+        long batchesRun = BATCHES_RUN.get();
+        long recordsProcessed = RECORDS_PROCESSED.get();
+        return "Ingestion mode: " + (POLL_RECORDS ? "poll on tick" : "watcher thread") +
+                "\nTicks run: " + ticksRun +
+                "\nTicks skipped (previous tick still running): " + TICKS_SKIPPED.get() +
+                "\nAverage tick time: " + (ticksRun == 0 ? 0 : TICK_NANOS_TOTAL.get() / ticksRun / 1000) + "us" +
+                "\nLongest tick time: " + TICK_NANOS_MAX.get() / 1000 + "us" +
+                "\nRecord batches processed: " + batchesRun +
+                "\nAverage batch time: " + (batchesRun == 0 ? 0 : BATCH_NANOS_TOTAL.get() / batchesRun / 1000) + "us" +
+                "\nLongest batch time: " + BATCH_NANOS_MAX.get() / 1000 + "us" +
+                "\nRecords processed: " + recordsProcessed +
+                "\nAverage record latency (file created to session updated): " + (recordsProcessed == 0 ? 0 : LATENCY_MILLIS_TOTAL.get() / recordsProcessed) + "ms" +
+                "\nLongest record latency: " + LATENCY_MILLIS_MAX.get() + "ms" +
+                "\nDuplicate records skipped: " + DUPLICATES_SKIPPED.get() +
+                "\nRecord re-reads scheduled: " + RETRIES_SCHEDULED.get() +
+                "\nStartup: " + (startupTimings == null ? "still starting" : startupTimings) +
+                "\nOutput files written: " + OUTPUT_WRITER.getWritesPerformed() + " (unchanged and skipped: " + OUTPUT_WRITER.getWritesSkipped() + ")";
+    }
+
+    /**
+     * Starts the tracker. Only the hooks and the records watcher are set up here, everything else (loading, recovering
+     * the last session, output files and catching up on missed records) is done in the background by
+     * {@link #startUp()}. Records created in the meantime wait for it in the ingest executor's queue.
+     */
     public static void init() {
+        ingestExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "prismarine-tracker-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ingestExecutor.execute(PrismarineTracker::startUp);
+
         try {
             recordsWatcher = FileSystems.getDefault().newWatchService();
             RECORDS_FOLDER.register(recordsWatcher, StandardWatchEventKinds.ENTRY_CREATE);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            // Records made while there's no watcher are caught up on at the next start
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to watch the records folder, new records won't be tracked: " + ExceptionUtil.toDetailedString(e));
+            recordsWatcher = null;
         }
 
-        if (!Files.isDirectory(SESSIONS_DIR)) {
-            try {
-                Files.createDirectories(SESSIONS_DIR);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        } else if (Files.exists(SESSION_FILE_PATH)) {
-            String s;
-            try {
-                s = FileUtil.readString(SESSION_FILE_PATH);
-                PlaySession lastSession = GSON.fromJson(s, PlaySession.class);
-                if (lastSession.runsWithGold > 0 && (System.currentTimeMillis() - lastSession.sessionEndTime < 300_000)) {
-                    Julti.log(Level.INFO, "(Prismarine Tracker) Last session was less than 5 minutes ago so it will be continued.");
-                    session = lastSession;
-                }
-            } catch (IOException | JsonSyntaxException | NullPointerException e) {
-                Julti.log(Level.WARN, "(Prismarine Tracker) Last session couldn't be recovered, so a new one will be started");
+        PluginEvents.RunnableEventType.END_TICK.register(PrismarineTracker::tick);
+        PluginEvents.MiscEventType.HOTKEY_PRESS.register(o -> {
+            String hotkeyCode = ((Pair<String, Point>) o).getLeft();
+            if (MANUAL_RESET_CODES.contains(hotkeyCode)) {
+                startedPlaying = true;
             }
+        });
+
+        if (recordsWatcher != null && !POLL_RECORDS) {
+            watcherThread = new Thread(PrismarineTracker::watchRecords, "prismarine-tracker-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
         }
+    }
 
+    /**
+     * Waits for the background part of starting up to finish, see {@link #init()}.
+     */
+    public static void awaitStartup() {
         try {
-            moveOldSessionFiles();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            STARTED.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
+    /**
+     * The background part of starting up, run first on the ingest executor. Each step is timed, and a step that fails
+     * is logged. If it was a required step, the steps after it are skipped and nothing is saved or processed until the
+     * next start, as saving a half-loaded state would write over the files that failed to load.
+     */
+    private static synchronized void startUp() {
+        long start = System.nanoTime();
+        StringJoiner timings = new StringJoiner(", ");
         try {
-            saveOutputFiles();
-        } catch (IOException e) {
-            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to save output files: " + ExceptionUtil.toDetailedString(e));
+            runStartupStep(timings, "folders", "prepare the tracker folder", true, () -> {
+                Files.createDirectories(SESSIONS_DIR);
+                moveOldSessionFiles();
+            });
+            runStartupStep(timings, "catalog", "load catalog", true, Catalog::load);
+            runStartupStep(timings, "run store", "load run store", true, RunStore::load);
+            runStartupStep(timings, "personal bests", "load personal bests", true, PersonalBests::load);
+            runStartupStep(timings, "rollup", "load rollup", true, Rollup::load);
+            runStartupStep(timings, "ledger", "load record ledger", true, RecordLedger::load);
+            runStartupStep(timings, "session", "start session journal", true, () -> {
+                recoverSession();
+                // Start the journal off from a snapshot of the (possibly continued) session
+                if (session.runsWithGold > 0) {
+                    saveSnapshot();
+                } else {
+                    SessionJournal.reset(session.sessionStartTime);
+                }
+                publishSession();
+            });
+            runStartupStep(timings, "logs", "archive old logs", false, () -> {
+                int archived = PrismarineLogger.archiveOldLogs();
+                if (archived > 0) {
+                    Julti.log(Level.INFO, "(Prismarine Tracker) Archived " + archived + " old log(s).");
+                }
+            });
+            runStartupStep(timings, "output", "save output files", false, PrismarineTracker::saveOutputFiles);
+            runStartupStep(timings, "catch-up", "catch up on missed records", false, PrismarineTracker::catchUp);
+        } finally {
+            startupTimings = (System.nanoTime() - start) / 1_000_000 + "ms (" + timings + ")" + (startupFailed ? ", failed so nothing will be saved" : "");
+            STARTED.countDown();
         }
+        Julti.log(Level.INFO, "(Prismarine Tracker) Started in " + startupTimings);
+        notifySessionListeners();
+    }
 
-        PluginEvents.RunnableEventType.END_TICK.register(PrismarineTracker::tick);
-        PluginEvents.MiscEventType.HOTKEY_PRESS.register(o -> {
-            String hotkeyCode = ((Pair<String, Point>) o).getLeft();
-            if (MANUAL_RESET_CODES.contains(hotkeyCode)) {
-                startedPlaying = true;
+    /**
+     * @param required whether the steps after this one and saving depend on it, see {@link #startUp()}
+     */
+    private static void runStartupStep(StringJoiner timings, String name, String description, boolean required, StartupStep step) {
+        if (startupFailed) {
+            timings.add(name + " skipped");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } catch (IOException | RuntimeException e) {
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to " + description + ": " + ExceptionUtil.toDetailedString(e));
+            if (required) {
+                startupFailed = true;
+                Julti.log(Level.ERROR, "(Prismarine Tracker) Nothing will be tracked or saved until Julti is restarted.");
             }
-        });
+        }
+        timings.add(name + " " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    /**
+     * Rebuilds the last session from its snapshot and journal, and continues it if it was less than 5 minutes ago.
+     * Otherwise it's saved as a finished session, and session.json is removed so it isn't recovered again.
+     */
+    private static void recoverSession() throws IOException {
+        SessionJournal.Recovery recovery;
+        try {
+            PlaySession lastSession = null;
+            if (Files.exists(SESSION_FILE_PATH)) {
+                lastSession = GSON.fromJson(FileUtil.readString(SESSION_FILE_PATH), PlaySession.class);
+            }
+            recovery = SessionJournal.recover(lastSession);
+        } catch (IOException | JsonSyntaxException | NullPointerException e) {
+            Julti.log(Level.WARN, "(Prismarine Tracker) Last session couldn't be recovered, so a new one will be started");
+            return;
+        }
+        if (recovery.otherSession != null) {
+            // The snapshot is of a session before the journal's, one that was finished but stopped before session.json
+            // was removed. Its saved files may already have it, but saving it again changes nothing.
+            if (recovery.otherSession.runsWithGold > 0) {
+                saveRecoveredSession(recovery.otherSession);
+            }
+            Files.deleteIfExists(SESSION_FILE_PATH);
+        }
+        PlaySession lastSession = recovery.session;
+        if (lastSession == null || lastSession.runsWithGold == 0) return;
+
+        if (System.currentTimeMillis() - lastSession.sessionEndTime < 300_000) {
+            Julti.log(Level.INFO, "(Prismarine Tracker) Last session was less than 5 minutes ago so it will be continued.");
+            session = lastSession;
+            sessionVersion++;
+        } else {
+            finishRecoveredSession(lastSession);
+        }
+    }
+
+    /**
+     * Saves a recovered session that won't be continued, with whatever the journal added to it, and moves the journal on
+     * to the new session. session.json is replaced with it first, so if the tracker stops before the journal has moved
+     * on, the next start finds the journal already contained in it.
+     */
+    private static void finishRecoveredSession(PlaySession recovered) throws IOException {
+        FileUtil.writeString(SESSION_FILE_PATH, GSON.toJson(recovered));
+        saveRecoveredSession(recovered);
+        SessionJournal.reset(session.sessionStartTime);
+        Files.deleteIfExists(SESSION_FILE_PATH);
+    }
+
+    private static void saveRecoveredSession(PlaySession recovered) throws IOException {
+        FileUtil.writeString(SESSIONS_DIR.resolve(recovered.sessionStartTime + ".json"), GSON.toJson(recovered));
+        Catalog.putSession(recovered);
+        Rollup.putSession(recovered);
     }
 
     private static void moveOldSessionFiles() throws IOException {
@@ -114,136 +356,253 @@ public class PrismarineTracker {
     }
 
     public static void stop() {
-        tickInternal();
+        if (watcherThread != null) watcherThread.interrupt();
+        ingestExecutor.shutdown();
+        try {
+            if (watcherThread != null) watcherThread.join(1000);
+            // Startup runs on the ingest executor and can take a while catching up, so it gets longer than the wait below
+            if (!STARTED.await(60, TimeUnit.SECONDS)) {
+                // Nothing is saved below, so the steps startup hasn't got to yet are skipped and save nothing either
+                startupFailed = true;
+            }
+            // Waits for scheduled re-reads too
+            if (!ingestExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Julti.log(Level.WARN, "(Prismarine Tracker) Record ingestion took too long to stop.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (STARTED.getCount() > 0) {
+            // Saving now could write over the files with a half-loaded state
+            Julti.log(Level.WARN, "(Prismarine Tracker) Stopped before starting up finished, nothing will be saved.");
+            return;
+        }
+        if (startupFailed) {
+            Julti.log(Level.WARN, "(Prismarine Tracker) Starting up failed, nothing will be saved.");
+            return;
+        }
+
+        if (recordsWatcher != null) {
+            // Pick up anything created after the watcher thread stopped
+            WatchKey watchKey = recordsWatcher.poll();
+            if (watchKey != null) {
+                List<Path> recordPaths = getCreatedPaths(watchKey);
+                if (!discardRecords) {
+                    processRecordFiles(recordPaths, System.currentTimeMillis(), 0);
+                }
+            }
+            try {
+                recordsWatcher.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        try {
+            PrismarineLogger.flushLog(true);
+        } catch (IOException e) {
+            Julti.log(Level.ERROR, "Failed to save log: " + ExceptionUtil.toDetailedString(e));
+        }
         if (session.runsWithGold > 0) {
-            trySave();
+            trySave(true);
+        }
+        try {
+            SessionJournal.close();
+        } catch (IOException ignored) {
+        }
+        trySaveLedger();
+        try {
+            RunStore.close();
+        } catch (IOException ignored) {
         }
     }
 
-    private static void trySave() {
+    private static void trySave(boolean forceSnapshot) {
         try {
-            save();
+            if (forceSnapshot || System.currentTimeMillis() - lastSnapshotTime > SNAPSHOT_INTERVAL_MILLIS || SessionJournal.getEntries() >= SNAPSHOT_INTERVAL_ENTRIES) {
+                saveSnapshot();
+            }
             saveOutputFiles();
         } catch (IOException e) {
             Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to save session: " + ExceptionUtil.toDetailedString(e));
         }
     }
 
-    private static void saveOutputFiles() throws IOException {
-        PlaySession.CalculatedStats cs = session.toCalculatedStats();
-
-        if (!Files.isDirectory(OUTPUT_DIR)) {
-            Files.createDirectories(OUTPUT_DIR);
+    private static void trySaveLedger() {
+        try {
+            RecordLedger.save();
+        } catch (IOException e) {
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to save record ledger: " + ExceptionUtil.toDetailedString(e));
         }
+    }
 
-        for (Field f : cs.getClass().getDeclaredFields()) {
-            try {
-                FileUtil.writeString(OUTPUT_DIR.resolve(f.getName() + ".txt"), f.get(cs).toString());
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
-        }
+    /**
+     * Writes the output files from the published snapshot, unless they were already written for its version.
+     */
+    private static void saveOutputFiles() throws IOException {
+        SessionSnapshot snapshot = SNAPSHOT.get();
+        if (snapshot.version == outputVersion) return;
+        OUTPUT_WRITER.write(snapshot.toCalculatedStats());
+        outputVersion = snapshot.version;
     }
 
-    private static void save() throws IOException {
+    /**
+     * Writes the whole session to its files and empties the journal. Sessions without any gold aren't saved, and keep
+     * their journal instead.
+     */
+    private static void saveSnapshot() throws IOException {
+        checkStartedUp();
+        if (session.runsWithGold == 0) return;
         session.sessionEndTime = System.currentTimeMillis();
+        session.journalGeneration = SessionJournal.getGeneration();
+        session.journalEntries = SessionJournal.getEntries();
         String toWrite = GSON.toJson(session);
         FileUtil.writeString(SESSION_FILE_PATH, toWrite);
         FileUtil.writeString(SESSIONS_DIR.resolve(session.sessionStartTime + ".json"), toWrite);
+        Catalog.putSession(session);
+        Rollup.putSession(session);
+        trySaveLedger();
+        SessionJournal.reset(session.sessionStartTime);
+        lastSnapshotTime = System.currentTimeMillis();
     }
 
-    private static void processJsonFile(Path recordPath) throws IOException {
-        JsonObject json = GSON.fromJson(FileUtil.readString(recordPath), JsonObject.class);
-        processJson(json);
+    private static void applyDelta(SessionDelta delta) {
+        session.apply(delta);
+        sessionVersion++;
+        try {
+            SessionJournal.append(delta);
+        } catch (IOException e) {
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to write to session journal: " + ExceptionUtil.toDetailedString(e));
+        }
     }
 
-    private static void processJson(JsonObject json) {
-        // If non-survival, cheats, or coop, or not random seed, don't track
-        if (json.get("default_gamemode").getAsInt() != 0) return;
-        if (!Objects.equals(json.get("run_type").getAsString(), "random_seed")) return;
-        if (!Objects.equals(json.get("mc_version").getAsString(), "1.15.2")) return;
-        if (json.get("is_coop").getAsBoolean()) return;
+    /**
+     * Counts a record read by the {@link RecordParser}. Its modification time is when it was written, which is when the
+     * run ended.
+     */
+    private static void processParsedRecord(RecordParser.ParsedRecord parsed) {
+        if (parsed.record == null) return;
+        if (!RecordLedger.add(parsed.id)) {
+            DUPLICATES_SKIPPED.incrementAndGet();
+            return;
+        }
+        processRecord(parsed.record, parsed.file.modified);
+    }
 
-        long finalRta = json.get("final_rta").getAsLong();
-        long date = System.currentTimeMillis() - finalRta; // better than record's date, that shit sucks!
+    private static void processRecord(RunRecord record, long endTime) {
+        long finalRta = record.finalRta;
+        long date = endTime - finalRta; // better than record's date, that shit sucks!
         updateActionTimes(finalRta, date);
 
-        long openToLanTime = 0;
-        boolean hasOpenedToLan = false;
-        try {
-            openToLanTime = json.get("open_lan").getAsLong();
-            hasOpenedToLan = true;
-        } catch (Exception ignored) {
-        }
-
-        if (!hasOpenedToLan && json.get("is_cheat_allowed").getAsBoolean())
-            return; // is_cheat_allowed will be true when open to lan and coping
+        if (!shouldTrack(record)) return;
 
-        if (startedPlaying) session.resets++;
+        SessionDelta delta = new SessionDelta(System.currentTimeMillis());
+        if (startedPlaying) delta.resets = 1;
 
-        Map<String, Long> timeLineEvents = new HashMap<>();
+        TimelineEvents timeLineEvents = TIMELINE_EVENTS;
+        timeLineEvents.clear();
 
-        for (JsonElement event : json.get("timelines").getAsJsonArray()) {
-            JsonObject eventJson = event.getAsJsonObject();
-            String name = eventJson.get("name").getAsString();
-            long rta = eventJson.get("rta").getAsLong();
-            long igt = eventJson.get("igt").getAsLong();
-            if (hasOpenedToLan && rta > openToLanTime) {
+        for (RunRecord.TimelineEvent event : record.timelines) {
+            if (!isBeforeLan(record, event)) {
                 continue;
             }
-            PrismarineLogger.queueLog(date + rta, name + " " + rta + " " + igt);
-            timeLineEvents.put(name, igt);
+            PrismarineLogger.queueLog(date + event.rta, event.name + " " + event.rta + " " + event.igt);
+            timeLineEvents.put(event.name, event.igt);
         }
 
-        if (json.get("is_completed").getAsBoolean() && (!hasOpenedToLan || (openToLanTime > finalRta))) {
-            session.runsFinished++;
-            session.runFinishTimes.add(json.get("retimed_igt").getAsLong());
-            tryMakeRunFile(json, timeLineEvents);
-            Julti.log(Level.INFO, "(Prismarine Tracker) Run Completed! Instance " + last1MinuteInstance + " world \"" + json.get("world_name").getAsString() + "\"");
+        if (isCountedCompletion(record)) {
+            tryMakeRunFile(record, timeLineEvents);
+            Julti.log(Level.INFO, "(Prismarine Tracker) Run Completed! Instance " + last1MinuteInstance + " world \"" + record.worldName + "\"");
         }
 
-        countRunsWithStuffStats(timeLineEvents);
+        addRecordStats(delta, record, timeLineEvents);
+        if (delta.runsWithGold != null) shouldSave = true;
+        // A run that got gold was played for a while, so it's more likely to be from the instance that was played for a
+        // minute than from whichever one is selected right now
+        int instance = delta.runsWithGold != null ? last1MinuteInstance : activeInstance;
+        if (instance > 0) delta.instance = instance;
+        applyDelta(delta);
+    }
 
-        if (timeLineEvents.containsKey("enter_end")) {
-            session.endEnterTimes.add(timeLineEvents.get("enter_end"));
+    /**
+     * is_cheat_allowed will be true when open to lan and coping, so only records with cheats and no lan are skipped.
+     */
+    static boolean shouldTrack(RunRecord record) {
+        return record.hasOpenedToLan || !record.isCheatAllowed;
+    }
+
+    /**
+     * @return whether the event happened before the world was opened to lan, or the world was never opened to lan
+     */
+    static boolean isBeforeLan(RunRecord record, RunRecord.TimelineEvent event) {
+        return !record.hasOpenedToLan || event.rta <= record.openToLanTime;
+    }
+
+    static boolean isCountedCompletion(RunRecord record) {
+        return record.isCompleted && (!record.hasOpenedToLan || (record.openToLanTime > record.finalRta));
+    }
+
+    /**
+     * Counts a record's splits into the delta, given its timeline events from before opening to lan.
+     */
+    static void addRecordStats(SessionDelta delta, RunRecord record, TimelineEvents timeLineEvents) {
+        if (isCountedCompletion(record)) {
+            delta.runsFinished = 1;
+            delta.runFinishTime = record.retimedIgt;
+        }
+        countRunsWithStuffStats(delta, timeLineEvents);
+        addSplitTimes(delta, record, timeLineEvents);
+    }
+
+    private static void addSplitTimes(SessionDelta delta, RunRecord record, TimelineEvents timeLineEvents) {
+        if (timeLineEvents.has(Event.ENTER_END)) {
+            delta.endEnterTime = timeLineEvents.get(Event.ENTER_END);
         }
 
-        if (!timeLineEvents.containsKey("pick_gold_block")) return;
+        if (!timeLineEvents.has(Event.PICK_GOLD_BLOCK)) return;
 
-        if (timeLineEvents.containsKey("trade_with_villager")) {
-            countRunsWithPearlsStat(json);
+        if (timeLineEvents.has(Event.TRADE_WITH_VILLAGER)) {
+            countRunsWithPearlsStat(delta, record);
         }
 
-        if (timeLineEvents.containsKey("enter_stronghold") && timeLineEvents.containsKey("trade_with_villager")
-                && timeLineEvents.get("enter_stronghold") > timeLineEvents.get("trade_with_villager")
-                && timeLineEvents.get("enter_stronghold") > timeLineEvents.get("enter_nether")
-                && timeLineEvents.get("enter_stronghold") > timeLineEvents.get("pick_gold_block")
+        if (timeLineEvents.has(Event.ENTER_STRONGHOLD) && timeLineEvents.has(Event.TRADE_WITH_VILLAGER) && timeLineEvents.has(Event.ENTER_NETHER)
+                && timeLineEvents.get(Event.ENTER_STRONGHOLD) > timeLineEvents.get(Event.TRADE_WITH_VILLAGER)
+                && timeLineEvents.get(Event.ENTER_STRONGHOLD) > timeLineEvents.get(Event.ENTER_NETHER)
+                && timeLineEvents.get(Event.ENTER_STRONGHOLD) > timeLineEvents.get(Event.PICK_GOLD_BLOCK)
         ) {
-            session.strongholdEnterTimes.add(timeLineEvents.get("enter_stronghold"));
+            delta.strongholdEnterTime = timeLineEvents.get(Event.ENTER_STRONGHOLD);
         }
 
 
         // If there's a village enter, and it came before monument, it's not regular insomniac, don't count times for averages.
-        if (timeLineEvents.containsKey("found_villager") && timeLineEvents.get("found_villager") < timeLineEvents.get("pick_gold_block"))
+        if (timeLineEvents.has(Event.FOUND_VILLAGER) && timeLineEvents.get(Event.FOUND_VILLAGER) < timeLineEvents.get(Event.PICK_GOLD_BLOCK))
             return;
 
-        session.goldBlockPickupTimes.add(timeLineEvents.get("pick_gold_block"));
+        delta.goldBlockPickupTime = timeLineEvents.get(Event.PICK_GOLD_BLOCK);
 
         // If there's a nether enter and a village enter, and the nether enter came before the village enter, don't count the rest of the times (Monument is still fine).
-        if (timeLineEvents.containsKey("found_villager") && timeLineEvents.containsKey("enter_nether") && timeLineEvents.get("enter_nether") < timeLineEvents.get("found_villager"))
+        if (timeLineEvents.has(Event.FOUND_VILLAGER) && timeLineEvents.has(Event.ENTER_NETHER) && timeLineEvents.get(Event.ENTER_NETHER) < timeLineEvents.get(Event.FOUND_VILLAGER))
             return;
 
-        if (!timeLineEvents.containsKey("found_villager")) return;
-        session.villageEnterTimes.add(timeLineEvents.get("found_villager"));
+        if (!timeLineEvents.has(Event.FOUND_VILLAGER)) return;
+        delta.villageEnterTime = timeLineEvents.get(Event.FOUND_VILLAGER);
 
-        if (!timeLineEvents.containsKey("enter_nether")) return;
-        session.netherEnterTimes.add(timeLineEvents.get("enter_nether"));
+        if (!timeLineEvents.has(Event.ENTER_NETHER)) return;
+        delta.netherEnterTime = timeLineEvents.get(Event.ENTER_NETHER);
 
-        if (!timeLineEvents.containsKey("enter_fortress")) return;
-        session.fortressEnterTimes.add(timeLineEvents.get("enter_fortress"));
+        if (!timeLineEvents.has(Event.ENTER_FORTRESS)) return;
+        delta.fortressEnterTime = timeLineEvents.get(Event.ENTER_FORTRESS);
+
+        if (!timeLineEvents.has(Event.NETHER_TRAVEL)) return;
+        delta.netherExitTime = timeLineEvents.get(Event.NETHER_TRAVEL);
+    }
 
-        if (!timeLineEvents.containsKey("nether_travel")) return;
-        session.netherExitTimes.add(timeLineEvents.get("nether_travel"));
+    private static void tryFlushLog() {
+        try {
+            PrismarineLogger.flushLogIfDue();
+        } catch (IOException e) {
+            Julti.log(Level.ERROR, "Failed to save log: " + ExceptionUtil.toDetailedString(e));
+        }
     }
 
     private static void updateActionTimes(long finalRta, long date) {
@@ -256,77 +615,66 @@ public class PrismarineTracker {
         }
     }
 
-    private static void tryMakeRunFile(JsonObject json, Map<String, Long> timeLineEvents) {
+    private static void tryMakeRunFile(RunRecord record, TimelineEvents timeLineEvents) {
         try {
-            makeRunFile(json, timeLineEvents);
+            makeRunFile(record, timeLineEvents, true);
         } catch (Exception e) {
             Julti.log(Level.ERROR, "Failed to make run file: " + ExceptionUtil.toDetailedString(e));
         }
     }
 
-    private static void makeRunFile(JsonObject json, Map<String, Long> timeLineEvents) throws IOException {
+    /**
+     * @param announce whether new personal bests from the run are logged
+     */
+    static void makeRunFile(RunRecord record, TimelineEvents timeLineEvents, boolean announce) throws IOException {
         if (!Files.exists(RUNS_DIR)) {
             Files.createDirectories(RUNS_DIR);
         }
 
-        long date = json.get("date").getAsLong();
+        long date = record.date;
         Path runPath = RUNS_DIR.resolve(date + ".json");
         CompletedRun cr = new CompletedRun();
 
         cr.date = date;
-        cr.mineMonument = timeLineEvents.getOrDefault("pick_gold_block", -1L);
-        cr.villageEnter = timeLineEvents.getOrDefault("found_villager", -1L);
-        cr.firstTrade = timeLineEvents.getOrDefault("trade_with_villager", -1L);
-        cr.netherEnter = timeLineEvents.getOrDefault("enter_nether", -1L);
-        cr.fortressEnter = timeLineEvents.getOrDefault("enter_fortress", -1L);
-        cr.netherExit = timeLineEvents.getOrDefault("nether_travel", -1L);
-        cr.strongholdEnter = timeLineEvents.getOrDefault("enter_stronghold", -1L);
-        cr.endEnter = timeLineEvents.getOrDefault("enter_end", -1L);
-
-        cr.completionIGT = json.get("final_igt").getAsLong();
-        cr.completionRTA = json.get("final_rta").getAsLong();
-        cr.completionRetime = json.get("retimed_igt").getAsLong();
+        cr.mineMonument = timeLineEvents.getOrDefault(Event.PICK_GOLD_BLOCK, -1);
+        cr.villageEnter = timeLineEvents.getOrDefault(Event.FOUND_VILLAGER, -1);
+        cr.firstTrade = timeLineEvents.getOrDefault(Event.TRADE_WITH_VILLAGER, -1);
+        cr.netherEnter = timeLineEvents.getOrDefault(Event.ENTER_NETHER, -1);
+        cr.fortressEnter = timeLineEvents.getOrDefault(Event.ENTER_FORTRESS, -1);
+        cr.netherExit = timeLineEvents.getOrDefault(Event.NETHER_TRAVEL, -1);
+        cr.strongholdEnter = timeLineEvents.getOrDefault(Event.ENTER_STRONGHOLD, -1);
+        cr.endEnter = timeLineEvents.getOrDefault(Event.ENTER_END, -1);
+
+        cr.completionIGT = record.finalIgt;
+        cr.completionRTA = record.finalRta;
+        cr.completionRetime = record.retimedIgt;
 
         FileUtil.writeString(runPath, GSON.toJson(cr));
+        RunStore.put(cr);
+        PersonalBests.update(cr, announce);
     }
 
-    private static void countRunsWithPearlsStat(JsonObject json) {
-        if (!json.has("stats")) return;
-        JsonObject exploringJson = json.getAsJsonObject("stats");
-        Optional<String> uuid = exploringJson.keySet().stream().findAny();
-
-        if (!uuid.isPresent()) return;
-        exploringJson = exploringJson.getAsJsonObject(uuid.get());
-
-        if (!exploringJson.has("stats")) return;
-        exploringJson = exploringJson.getAsJsonObject("stats");
-
-        if (!exploringJson.has("minecraft:crafted")) return;
-        exploringJson = exploringJson.getAsJsonObject("minecraft:crafted");
-
-        if (!exploringJson.has("minecraft:ender_pearl")) return;
-        int pearls = exploringJson.get("minecraft:ender_pearl").getAsInt();
-        if (pearls >= 10) {
-            session.runsWith10Pearls++;
+    private static void countRunsWithPearlsStat(SessionDelta delta, RunRecord record) {
+        if (record.craftedPearls >= 10) {
+            delta.runsWith10Pearls = 1;
         }
     }
 
-    private static void countRunsWithStuffStats(Map<String, Long> timeLineEvents) {
-        if ((timeLineEvents.containsKey("enter_end"))) session.runsWithEndEnter++;
+    private static void countRunsWithStuffStats(SessionDelta delta, TimelineEvents timeLineEvents) {
+        if ((timeLineEvents.has(Event.ENTER_END))) delta.runsWithEndEnter = 1;
 
-        if (!timeLineEvents.containsKey("pick_gold_block")) return;
-        session.runsWithGold++;
-        shouldSave = true;
+        if (!timeLineEvents.has(Event.PICK_GOLD_BLOCK)) return;
+        delta.runsWithGold = 1;
 
-        if (timeLineEvents.containsKey("found_villager")) session.runsWithVillage++;
-        if (timeLineEvents.containsKey("trade_with_villager")) session.runsWithTrading++;
-        if (timeLineEvents.containsKey("enter_nether")) {
-            session.runsWithNether++;
-            if (timeLineEvents.containsKey("enter_stronghold")) session.runsWithStronghold++;
+        if (timeLineEvents.has(Event.FOUND_VILLAGER)) delta.runsWithVillage = 1;
+        if (timeLineEvents.has(Event.TRADE_WITH_VILLAGER)) delta.runsWithTrading = 1;
+        if (timeLineEvents.has(Event.ENTER_NETHER)) {
+            delta.runsWithNether = 1;
+            if (timeLineEvents.has(Event.ENTER_STRONGHOLD)) delta.runsWithStronghold = 1;
         }
-        if (timeLineEvents.containsKey("enter_fortress")) session.runsWithFort++;
-        if (timeLineEvents.containsKey("nether_travel") || timeLineEvents.containsKey("enter_end"))
-            session.runsWithNetherExit++;
+        if (timeLineEvents.has(Event.ENTER_FORTRESS)) delta.runsWithFort = 1;
+        if (timeLineEvents.has(Event.NETHER_TRAVEL) || timeLineEvents.has(Event.ENTER_END))
+            delta.runsWithNetherExit = 1;
     }
 
     private static void tick() {
@@ -335,17 +683,24 @@ public class PrismarineTracker {
         } else {
             return;
         }
-        new Thread(PrismarineTracker::tickInternal, "prismarine-tracker-tick").start();
-    }
 
-    private static synchronized void tickInternal() {
-        boolean benchmarkIsRunning = JultiOptions.getJultiOptions().resetStyle.equals("Benchmark");
-        if (benchmarkIsRunning || benchmarkWasRunning) {
-            clearWatcher();
-            benchmarkWasRunning = benchmarkIsRunning;
-            return;
+        if (POLL_RECORDS || PrismarineLogger.isFlushDue() || Rollup.isDayOver()) {
+            // Only one tick is ever running or waiting; if the last one hasn't finished, this one is dropped.
+            if (!TICK_RUNNING.compareAndSet(false, true)) {
+                TICKS_SKIPPED.incrementAndGet();
+            } else {
+                try {
+                    ingestExecutor.execute(PrismarineTracker::runTick);
+                } catch (RejectedExecutionException e) {
+                    TICK_RUNNING.set(false); // Stopping, the log gets flushed in stop()
+                }
+            }
         }
 
+        boolean benchmarkIsRunning = JultiOptions.getJultiOptions().resetStyle.equals("Benchmark");
+        discardRecords = benchmarkIsRunning || benchmarkWasRunning;
+        benchmarkWasRunning = benchmarkIsRunning;
+
         MinecraftInstance selectedInstance;
         if ((selectedInstance = InstanceManager.getInstanceManager().getSelectedInstance()) != null && "1.15.2".equals(selectedInstance.getVersionString())) {
             int instanceNum = InstanceManager.getInstanceManager().getInstanceNum(selectedInstance);
@@ -356,66 +711,304 @@ public class PrismarineTracker {
                 last1MinuteInstance = instanceNum;
             }
         }
+    }
 
-        timeMin = Long.MAX_VALUE;
-        timeMax = 0;
+    /**
+     * Runs on the ingest executor: flushes the log if due, rewrites the today and week output files once the day is over
+     * and, when polling, processes whatever the records watcher has picked up since the last tick.
+     */
+    private static void runTick() {
+        long start = System.nanoTime();
+        try {
+            if (POLL_RECORDS && recordsWatcher != null) {
+                WatchKey watchKey;
+                while ((watchKey = recordsWatcher.poll()) != null) {
+                    ingestWatchKey(watchKey, System.currentTimeMillis(), Runnable::run);
+                }
+            }
+            tryFlushLog();
+            if (!startupFailed && Rollup.isDayOver()) {
+                try {
+                    Rollup.refreshOutputFiles();
+                } catch (IOException e) {
+                    Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to save rollup output files: " + ExceptionUtil.toDetailedString(e));
+                }
+            }
+        } catch (ClosedWatchServiceException ignored) {
+            // Stopping
+        } catch (RuntimeException e) {
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Tick failed: " + ExceptionUtil.toDetailedString(e));
+        } finally {
+            long duration = System.nanoTime() - start;
+            TICKS_RUN.incrementAndGet();
+            TICK_NANOS_TOTAL.addAndGet(duration);
+            TICK_NANOS_MAX.accumulateAndGet(duration, Math::max);
+            TICK_RUNNING.set(false);
+        }
+    }
 
-        WatchKey watchKey = recordsWatcher.poll();
-        if (watchKey == null)
-            return; // It's ok to cancel the shouldSave stuff because that can't be true unless some json processing happens
+    /**
+     * Blocks on the records watcher and hands each batch of new records to the ingest executor as soon as it arrives.
+     */
+    private static void watchRecords() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = recordsWatcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            try {
+                ingestWatchKey(watchKey, System.currentTimeMillis(), ingestExecutor::execute);
+            } catch (RejectedExecutionException e) {
+                return; // Stopping
+            }
+        }
+    }
 
+    /**
+     * Gives the work for a watch key's events to run, which either queues it on the ingest executor or, when already on
+     * it, runs it straight away.
+     */
+    private static void ingestWatchKey(WatchKey watchKey, long receivedTime, Consumer<Runnable> run) {
+        List<Path> recordPaths = getCreatedPaths(watchKey);
+        if (discardRecords) {
+            run.accept(() -> advanceHighWaterMark(receivedTime));
+            return;
+        }
+        if (watcherOverflowed) {
+            // Events were lost, so find the records by modification time instead
+            watcherOverflowed = false;
+            run.accept(PrismarineTracker::catchUp);
+        }
+        if (!recordPaths.isEmpty()) {
+            run.accept(() -> processRecordFiles(recordPaths, receivedTime, 0));
+        }
+    }
+
+    private static List<Path> getCreatedPaths(WatchKey watchKey) {
+        List<Path> recordPaths = new ArrayList<>();
         for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                watcherOverflowed = true;
+                continue;
+            }
             if (event.kind() != StandardWatchEventKinds.ENTRY_CREATE || !(event.context() instanceof Path))
                 continue;
+            recordPaths.add(RECORDS_FOLDER.resolve((Path) event.context()));
+        }
+        watchKey.reset();
+        return recordPaths;
+    }
+
+    /**
+     * Counts a batch of records into the session in the order the runs ended. The records are read in parallel by the
+     * {@link RecordParser}, but only this method, on the ingest thread, changes the session.
+     *
+     * @param attempt how many times these records have been tried before
+     */
+    private static synchronized void processRecordFiles(List<Path> recordPaths, long receivedTime, int attempt) {
+        if (attempt > 0) {
+            PENDING_RETRIES.keySet().removeAll(recordPaths);
+        }
+        if (startupFailed) {
+            return; // Caught up on at the next start, as the high-water mark isn't saved either
+        }
+        if (receivedTime < discardRecordsBefore) {
+            return; // Session was cleared after these were created
+        }
+        long start = System.nanoTime();
+
+        timeMin = Long.MAX_VALUE;
+        timeMax = 0;
+
+        long lastModified = 0;
+        Map<Path, Long> toRetry = new HashMap<>();
+        List<RecordRebuilder.RecordFile> recordFiles = new ArrayList<>(recordPaths.size());
+        for (Path recordPath : recordPaths) {
             try {
-                processJsonFile(RECORDS_FOLDER.resolve((Path) event.context()));
-            } catch (IOException | JsonSyntaxException | NullPointerException e) {
+                BasicFileAttributes attributes = Files.readAttributes(recordPath, BasicFileAttributes.class);
+                recordFiles.add(new RecordRebuilder.RecordFile(recordPath, attributes.lastModifiedTime().toMillis(), attributes.creationTime().toMillis()));
+            } catch (NoSuchFileException e) {
                 Julti.log(Level.ERROR, "Failed to process a world: " + ExceptionUtil.toDetailedString(e));
+            } catch (IOException e) {
+                if (attempt < RETRY_DELAYS_MILLIS.length) {
+                    toRetry.put(recordPath, Long.MIN_VALUE);
+                } else {
+                    Julti.log(Level.ERROR, "Failed to process a world: " + ExceptionUtil.toDetailedString(e));
+                }
             }
         }
-        watchKey.reset();
-        try {
-            PrismarineLogger.flushLog();
-        } catch (IOException e) {
-            Julti.log(Level.ERROR, "Failed to save log: " + ExceptionUtil.toDetailedString(e));
+        // Counted in the order the runs ended
+        recordFiles.sort(Comparator.comparingLong(r -> r.modified));
+
+        // Records are read on the parser pool up to a window ahead of the one being counted
+        List<Future<RecordParser.ParsedRecord>> parsing = new ArrayList<>(recordFiles.size());
+        long[] creationTimes = new long[recordFiles.size()];
+        int processed = 0;
+        for (int i = 0; i < recordFiles.size(); i++) {
+            while (parsing.size() < recordFiles.size() && parsing.size() < i + RecordParser.WINDOW) {
+                parsing.add(RecordParser.SHARED.submit(recordFiles.get(parsing.size())));
+            }
+            RecordRebuilder.RecordFile recordFile = recordFiles.get(i);
+            try {
+                processParsedRecord(RecordParser.await(parsing.get(i)));
+                creationTimes[processed++] = recordFile.created;
+                lastModified = Math.max(lastModified, recordFile.modified);
+            } catch (NoSuchFileException e) {
+                Julti.log(Level.ERROR, "Failed to process a world: " + ExceptionUtil.toDetailedString(e));
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                if (attempt < RETRY_DELAYS_MILLIS.length) {
+                    toRetry.put(recordFile.path, recordFile.modified);
+                } else {
+                    Julti.log(Level.ERROR, "Failed to process a world: " + ExceptionUtil.toDetailedString(e));
+                    lastModified = Math.max(lastModified, recordFile.modified);
+                }
+            }
+            parsing.set(i, null);
         }
-
+        if (!toRetry.isEmpty()) {
+            scheduleRetry(toRetry, receivedTime, attempt);
+        }
+        advanceHighWaterMark(lastModified);
         if (timeMax != 0 && timeMin != Long.MAX_VALUE) {
             updateLastActivity();
         }
+        tryFlushLog();
+        publishSession();
+        if (processed > 0) {
+            notifySessionListeners();
+        }
+
+        long updatedTime = System.currentTimeMillis();
+        for (int i = 0; i < processed; i++) {
+            long latency = updatedTime - creationTimes[i];
+            LATENCY_MILLIS_TOTAL.addAndGet(latency);
+            LATENCY_MILLIS_MAX.accumulateAndGet(latency, Math::max);
+        }
+        RECORDS_PROCESSED.addAndGet(processed);
 
         if (shouldSave) {
             shouldSave = false;
-            trySave();
+            trySave(false);
+        }
+
+        long duration = System.nanoTime() - start;
+        BATCHES_RUN.incrementAndGet();
+        BATCH_NANOS_TOTAL.addAndGet(duration);
+        BATCH_NANOS_MAX.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * Processes the records modified after the high-water mark, which the watcher missed either because Julti was
+     * closed or because its events overflowed. Records from before the current session become sessions of their own,
+     * and the rest are counted into the current session. Runs on the ingest executor.
+     */
+    private static void catchUp() {
+        if (discardRecords) return;
+        long scanTime = System.currentTimeMillis();
+        List<RecordRebuilder.RecordFile> missed;
+        try {
+            missed = RecordRebuilder.listRecordFiles(RecordLedger.getHighWaterMark() + 1, Long.MAX_VALUE);
+        } catch (IOException e) {
+            Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to look for missed records: " + ExceptionUtil.toDetailedString(e));
+            return;
+        }
+        if (missed.isEmpty()) return;
+        Julti.log(Level.INFO, "(Prismarine Tracker) Found " + missed.size() + " record(s) that weren't processed.");
+
+        List<RecordRebuilder.RecordFile> beforeSession = new ArrayList<>();
+        List<Path> duringSession = new ArrayList<>();
+        for (RecordRebuilder.RecordFile recordFile : missed) {
+            if (recordFile.modified < getCurrentSession().getSessionStartTime()) {
+                beforeSession.add(recordFile);
+            } else {
+                duringSession.add(recordFile.path);
+            }
+        }
+        if (!beforeSession.isEmpty()) {
+            try {
+                Julti.log(Level.INFO, "(Prismarine Tracker) " + RecordRebuilder.catchUp(beforeSession));
+                RecordLedger.advanceHighWaterMark(beforeSession.get(beforeSession.size() - 1).modified);
+            } catch (IOException e) {
+                Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to process missed records: " + ExceptionUtil.toDetailedString(e));
+                return;
+            }
+        }
+        if (!duringSession.isEmpty()) {
+            processRecordFiles(duringSession, scanTime, 0);
+        }
+    }
+
+    private static void scheduleRetry(Map<Path, Long> recordsToRetry, long receivedTime, int attempt) {
+        List<Path> recordPaths = new ArrayList<>(recordsToRetry.keySet());
+        // Pending even if the retry can't be scheduled, so the high-water mark stays below them and they're caught up on
+        PENDING_RETRIES.putAll(recordsToRetry);
+        try {
+            ingestExecutor.schedule(() -> processRecordFiles(recordPaths, receivedTime, attempt + 1), RETRY_DELAYS_MILLIS[attempt], TimeUnit.MILLISECONDS);
+            RETRIES_SCHEDULED.addAndGet(recordPaths.size());
+        } catch (RejectedExecutionException e) {
+            Julti.log(Level.WARN, "(Prismarine Tracker) " + recordPaths.size() + " record(s) couldn't be read before stopping, they will be caught up on at the next start.");
         }
     }
 
-    private static void clearWatcher() {
-        WatchKey key = recordsWatcher.poll();
-        if (key == null) return;
-        key.pollEvents();
-        key.reset();
+    /**
+     * Moves the high-water mark forward to the time, but not past any record still waiting to be read again. Whatever is
+     * held back is moved to once those records are done.
+     */
+    private static synchronized void advanceHighWaterMark(long time) {
+        heldBackHighWaterMark = Math.max(heldBackHighWaterMark, time);
+        long limit = Long.MAX_VALUE;
+        for (long modified : PENDING_RETRIES.values()) {
+            // Without a modification time, the record could be from any time after the current mark
+            limit = Math.min(limit, modified == Long.MIN_VALUE ? RecordLedger.getHighWaterMark() : modified - 1);
+        }
+        RecordLedger.advanceHighWaterMark(Math.min(heldBackHighWaterMark, limit));
     }
 
     private static synchronized void updateLastActivity() {
         if (!startedPlaying) return;
         long timeSinceLastActivity = timeMin - session.lastActivity;
+        SessionDelta delta = new SessionDelta(System.currentTimeMillis());
         if (timeSinceLastActivity > 120_000 /*2 Minutes*/) {
-            session.breaks.add(timeSinceLastActivity);
+            delta.breakTime = timeSinceLastActivity;
             PrismarineLogger.queueLog(System.currentTimeMillis(), "finish_break " + timeSinceLastActivity);
         }
-        session.lastActivity = timeMax;
+        delta.lastActivity = timeMax;
+        applyDelta(delta);
     }
 
-    public static void clearSession() throws IOException {
+    public static synchronized void clearSession() throws IOException {
+        checkStartedUp();
         Path potentialPath = SESSIONS_DIR.resolve(session.sessionStartTime + ".json");
         if (session.runsWithGold == 0) {
             Files.deleteIfExists(potentialPath);
+            Catalog.removeSession(session.sessionStartTime);
+            Rollup.removeSession(session.sessionStartTime);
+        } else {
+            saveSnapshot(); // Keep whatever is still only in the journal
         }
         Files.deleteIfExists(SESSION_FILE_PATH);
         session = new PlaySession();
-        clearWatcher();
+        sessionVersion++;
+        publishSession();
+        SessionJournal.reset(session.sessionStartTime);
+        discardRecordsBefore = System.currentTimeMillis();
+        RecordLedger.advanceHighWaterMark(discardRecordsBefore);
         startedPlaying = false;
+        notifySessionListeners();
+    }
+
+    /**
+     * Refuses to go on if loading failed at startup, see {@link #startUp()}.
+     */
+    static void checkStartedUp() throws IOException {
+        if (startupFailed) {
+            throw new IOException("The tracker failed to start up, so nothing can be saved until Julti is restarted");
+        }
     }
 
+    private interface StartupStep {
+        void run() throws IOException;
+    }
 }
@@ -0,0 +1,169 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The ids of the most recently processed records, so a record that is seen twice (watch events can fire more than once
+ * for the same file) is only counted once.
+ * <p>
+ * Ids are kept in a fixed-size ring, oldest first, with an open-addressing hash set over it for constant time lookups.
+ * Once the ring is full the oldest id is forgotten, which is fine since duplicates arrive within seconds of each other.
+ * <p>
+ * The ledger also keeps a high-water mark: the modification time up to which every record has been dealt with (counted
+ * or deliberately discarded), so records missed by the watcher can be found by their modification time. It is saved as
+ * the first 8 bytes of the ledger file.
+ */
+public final class RecordLedger {
+    private static final Path LEDGER_PATH = PrismarineTracker.TRACKER_DIR.resolve("ledger.bin");
+    private static final int CAPACITY = 1 << 16;
+    private static final int TABLE_SIZE = CAPACITY * 2; // Power of two, at most half full
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+
+    private static final long[] ring = new long[CAPACITY];
+    private static final long[] table = new long[TABLE_SIZE];
+    private static int ringStart = 0;
+    private static int size = 0;
+    private static int removedSlots = 0;
+    private static boolean dirty = false;
+    private static long highWaterMark = 0;
+
+    private RecordLedger() {
+    }
+
+    /**
+     * @return an id for the record made from its world name and date, never 0 or -1
+     */
+    public static long idOf(RunRecord record) {
+        // 64-bit FNV-1a over the world name and date
+        long hash = 0xcbf29ce484222325L;
+        String worldName = record.worldName == null ? "" : record.worldName;
+        for (int i = 0; i < worldName.length(); i++) {
+            hash = (hash ^ worldName.charAt(i)) * 0x100000001b3L;
+        }
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ ((record.date >>> (i * 8)) & 0xff)) * 0x100000001b3L;
+        }
+        return hash == EMPTY || hash == REMOVED ? 1 : hash;
+    }
+
+    private static int slotOf(long id) {
+        return (int) ((id ^ (id >>> 32)) * 0x9E3779B9L) & (TABLE_SIZE - 1);
+    }
+
+    public static synchronized boolean contains(long id) {
+        for (int slot = slotOf(id); table[slot] != EMPTY; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            if (table[slot] == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the id, forgetting the oldest one if the ledger is full.
+     *
+     * @return false if the id was already in the ledger
+     */
+    public static synchronized boolean add(long id) {
+        if (contains(id)) return false;
+        if (size == CAPACITY) {
+            removeFromTable(ring[ringStart]);
+            removedSlots++;
+            ring[ringStart] = id;
+            ringStart = (ringStart + 1) % CAPACITY;
+        } else {
+            ring[(ringStart + size) % CAPACITY] = id;
+            size++;
+        }
+        insertIntoTable(id);
+        if (removedSlots > CAPACITY / 2) rebuildTable();
+        dirty = true;
+        return true;
+    }
+
+    private static void insertIntoTable(long id) {
+        int slot = slotOf(id);
+        while (table[slot] != EMPTY && table[slot] != REMOVED) {
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        table[slot] = id;
+    }
+
+    private static void removeFromTable(long id) {
+        for (int slot = slotOf(id); table[slot] != EMPTY; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            if (table[slot] == id) {
+                table[slot] = REMOVED;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lookups have to step over removed slots, so the table is rebuilt from the ring once there are too many of them.
+     */
+    private static void rebuildTable() {
+        Arrays.fill(table, EMPTY);
+        removedSlots = 0;
+        for (int i = 0; i < size; i++) {
+            insertIntoTable(ring[(ringStart + i) % CAPACITY]);
+        }
+    }
+
+    public static synchronized int size() {
+        return size;
+    }
+
+    public static synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Moves the high-water mark forward to the time, if it is later than the current one.
+     */
+    public static synchronized void advanceHighWaterMark(long time) {
+        if (time <= highWaterMark) return;
+        highWaterMark = time;
+        dirty = true;
+    }
+
+    /**
+     * Loads the ledger. Without a ledger file, the high-water mark starts at the current time so that old records aren't
+     * picked up as missed ones; those can be brought in with the rebuild command.
+     */
+    public static synchronized void load() throws IOException {
+        ringStart = 0;
+        size = 0;
+        rebuildTable();
+        if (!Files.exists(LEDGER_PATH)) {
+            highWaterMark = System.currentTimeMillis();
+            dirty = true;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(LEDGER_PATH));
+        highWaterMark = buffer.remaining() >= Long.BYTES ? buffer.getLong() : System.currentTimeMillis();
+        while (buffer.remaining() >= Long.BYTES) {
+            add(buffer.getLong());
+        }
+        dirty = false;
+    }
+
+    /**
+     * Writes the high-water mark and then the ids oldest first, if anything changed since the last save.
+     */
+    public static synchronized void save() throws IOException {
+        if (!dirty) return;
+        ByteBuffer buffer = ByteBuffer.allocate((size + 1) * Long.BYTES);
+        buffer.putLong(highWaterMark);
+        for (int i = 0; i < size; i++) {
+            buffer.putLong(ring[(ringStart + i) % CAPACITY]);
+        }
+        Path tempPath = LEDGER_PATH.resolveSibling(LEDGER_PATH.getFileName() + ".tmp");
+        Files.write(tempPath, buffer.array());
+        Files.move(tempPath, LEDGER_PATH, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+}
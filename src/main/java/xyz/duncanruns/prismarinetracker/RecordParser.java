@@ -0,0 +1,106 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The parse stage of record ingestion: a pool of threads that read record files ahead of the ingest thread, which then
+ * counts them into the session one at a time and in order. A burst of records is read on every core, while the session
+ * still only ever has one writer.
+ * <p>
+ * Callers keep at most {@link #WINDOW} records in flight, which also bounds how many parsed records wait in memory. The
+ * pool's queue is the same size, and a record that doesn't fit (only possible when the pool is shut down) is read on the
+ * caller's thread instead.
+ */
+final class RecordParser {
+    static final int WINDOW = 256;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    /**
+     * The parser used for ingestion, with one core left for the ingest thread.
+     */
+    static final RecordParser SHARED = new RecordParser(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final ThreadPoolExecutor pool;
+
+    RecordParser(int threads) {
+        pool = createPool(threads);
+    }
+
+    private static ThreadPoolExecutor createPool(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(WINDOW), r -> {
+            Thread thread = new Thread(r, "prismarine-tracker-parse-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Records come in bursts, so there's no need to keep threads around between them
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Starts reading the record file on the pool.
+     */
+    Future<ParsedRecord> submit(RecordRebuilder.RecordFile recordFile) {
+        FutureTask<ParsedRecord> task = new FutureTask<>(() -> parse(recordFile));
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+        return task;
+    }
+
+    /**
+     * Waits for a record submitted with {@link #submit(RecordRebuilder.RecordFile)}, throwing whatever reading it threw.
+     */
+    static ParsedRecord await(Future<ParsedRecord> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a record to be read");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stops the pool's threads once they are done. Records submitted after this are read on the caller's thread.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Runs on the pool's threads, so it must not touch any shared state.
+     */
+    private static ParsedRecord parse(RecordRebuilder.RecordFile recordFile) throws IOException {
+        RunRecord record = RecordReader.read(recordFile.path);
+        return new ParsedRecord(recordFile, record, record == null ? 0 : RecordLedger.idOf(record));
+    }
+
+    /**
+     * A record read by the pool. Neither it nor its {@link RunRecord} can be changed, so it is safe to hand to the ingest
+     * thread.
+     */
+    static final class ParsedRecord {
+        final RecordRebuilder.RecordFile file;
+        /**
+         * The record, or null if it isn't a run the tracker counts.
+         */
+        final RunRecord record;
+        final long id;
+
+        private ParsedRecord(RecordRebuilder.RecordFile file, RunRecord record, long id) {
+            this.file = file;
+            this.record = record;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull-based reader for SpeedRunIGT records. Only the fields used by the tracker are read, everything else (mostly the
+ * large "stats" object) is skipped without being built into a tree.
+ */
+public final class RecordReader {
+    private static final String[] CRAFTED_PEARLS_PATH = {null, "stats", "minecraft:crafted", "minecraft:ender_pearl"};
+
+    private static final int HAS_GAMEMODE = 1;
+    private static final int HAS_RUN_TYPE = 1 << 1;
+    private static final int HAS_VERSION = 1 << 2;
+    private static final int HAS_COOP = 1 << 3;
+    private static final int HAS_FINAL_RTA = 1 << 4;
+    private static final int HAS_CHEATS = 1 << 5;
+    private static final int HAS_COMPLETED = 1 << 6;
+    private static final int HAS_TIMELINES = 1 << 7;
+    private static final int REQUIRED = (1 << 8) - 1;
+
+    private RecordReader() {
+    }
+
+    /**
+     * Reads a record file.
+     *
+     * @return the record, or null if the record is not a random seed, solo, survival 1.15.2 run and shouldn't be tracked
+     */
+    public static RunRecord read(Path recordPath) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(recordPath, StandardCharsets.UTF_8))) {
+            return read(reader);
+        }
+    }
+
+    public static RunRecord read(JsonReader reader) throws IOException {
+        long date = 0;
+        String worldName = null;
+        long finalRta = 0;
+        long finalIgt = 0;
+        long retimedIgt = 0;
+        boolean isCompleted = false;
+        boolean isCheatAllowed = false;
+        boolean hasOpenedToLan = false;
+        long openToLanTime = 0;
+        int craftedPearls = -1;
+        List<RunRecord.TimelineEvent> timelines = new ArrayList<>();
+        int found = 0;
+        boolean pearlsNeeded = true;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                // If non-survival, or coop, or not random seed, don't track
+                case "default_gamemode":
+                    if (reader.nextInt() != 0) return null;
+                    found |= HAS_GAMEMODE;
+                    break;
+                case "run_type":
+                    if (!"random_seed".equals(reader.nextString())) return null;
+                    found |= HAS_RUN_TYPE;
+                    break;
+                case "mc_version":
+                    if (!"1.15.2".equals(reader.nextString())) return null;
+                    found |= HAS_VERSION;
+                    break;
+                case "is_coop":
+                    if (reader.nextBoolean()) return null;
+                    found |= HAS_COOP;
+                    break;
+                case "date":
+                    date = reader.nextLong();
+                    break;
+                case "world_name":
+                    worldName = reader.nextString();
+                    break;
+                case "final_rta":
+                    finalRta = reader.nextLong();
+                    found |= HAS_FINAL_RTA;
+                    break;
+                case "final_igt":
+                    finalIgt = reader.nextLong();
+                    break;
+                case "retimed_igt":
+                    retimedIgt = reader.nextLong();
+                    break;
+                case "open_lan":
+                    openToLanTime = reader.nextLong();
+                    hasOpenedToLan = true;
+                    break;
+                case "is_cheat_allowed":
+                    isCheatAllowed = reader.nextBoolean();
+                    found |= HAS_CHEATS;
+                    break;
+                case "is_completed":
+                    isCompleted = reader.nextBoolean();
+                    found |= HAS_COMPLETED;
+                    break;
+                case "timelines":
+                    readTimelines(reader, timelines);
+                    found |= HAS_TIMELINES;
+                    // Pearls are only counted for runs that picked up a gold block and traded
+                    pearlsNeeded = hasEvent(timelines, "pick_gold_block") && hasEvent(timelines, "trade_with_villager");
+                    break;
+                case "stats":
+                    if (pearlsNeeded) {
+                        craftedPearls = readInt(reader, CRAFTED_PEARLS_PATH, 0);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if ((found & REQUIRED) != REQUIRED) {
+            throw new MalformedJsonException("Record is missing required fields");
+        }
+        return new RunRecord(date, worldName, finalRta, finalIgt, retimedIgt, isCompleted, isCheatAllowed, hasOpenedToLan, openToLanTime, craftedPearls, timelines);
+    }
+
+    private static void readTimelines(JsonReader reader, List<RunRecord.TimelineEvent> timelines) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            long rta = 0;
+            long igt = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "rta":
+                        rta = reader.nextLong();
+                        break;
+                    case "igt":
+                        igt = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (name == null) {
+                throw new MalformedJsonException("Timeline event is missing a name");
+            }
+            timelines.add(new RunRecord.TimelineEvent(name, rta, igt));
+        }
+        reader.endArray();
+    }
+
+    private static boolean hasEvent(List<RunRecord.TimelineEvent> timelines, String name) {
+        for (RunRecord.TimelineEvent event : timelines) {
+            if (event.name.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks down nested objects following the path and reads the int at the end of it, skipping every other value on
+     * the way. A null path element matches the first key of its object.
+     *
+     * @return the int at the end of the path, or -1 if it doesn't exist
+     */
+    private static int readInt(JsonReader reader, String[] path, int depth) throws IOException {
+        if (depth == path.length) {
+            return reader.nextInt();
+        }
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return -1;
+        }
+        int out = -1;
+        boolean matched = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (!matched && (path[depth] == null || path[depth].equals(name))) {
+                matched = true;
+                out = readInt(reader, path, depth + 1);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return out;
+    }
+}
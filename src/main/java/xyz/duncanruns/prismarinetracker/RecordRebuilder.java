@@ -0,0 +1,346 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.Level;
+import xyz.duncanruns.julti.Julti;
+import xyz.duncanruns.julti.cancelrequester.CancelRequester;
+import xyz.duncanruns.julti.util.ExceptionUtil;
+import xyz.duncanruns.julti.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds sessions and completed runs from the SpeedRunIGT records folder, for times the tracker wasn't running or the
+ * session was cleared.
+ * <p>
+ * Records are listed and sorted by modification time (which is when the run ended), then parsed in parallel one chunk at
+ * a time, so only a chunk of parsed records and the session being built are held at once.
+ */
+public final class RecordRebuilder {
+    private static final Gson GSON = new Gson();
+    private static final int CHUNK_SIZE = 2048;
+    private static final long SESSION_GAP_MILLIS = 30 * 60_000;
+    private static final long BREAK_MILLIS = 120_000; // Same as a break while tracking
+
+    private RecordRebuilder() {
+    }
+
+    /**
+     * Replaces every saved session that overlaps the date range (inclusive) with sessions rebuilt from the records, and
+     * writes run files for the completed runs. Records from the current session are left alone.
+     * <p>
+     * The records of the sessions being replaced are read too, even where they fall outside the range, so their runs are
+     * neither lost nor counted twice. The saved sessions are only replaced once the rebuild has finished, so cancelling it
+     * leaves them as they were.
+     *
+     * @return a summary of what was rebuilt
+     */
+    public static String rebuild(LocalDate from, LocalDate to, CancelRequester cancelRequester) throws IOException {
+        PrismarineTracker.checkStartedUp();
+        long currentSessionStart = PrismarineTracker.getCurrentSession().getSessionStartTime();
+        long fromMillis = from.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long toMillis = Math.min(to.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(), currentSessionStart);
+        if (fromMillis >= toMillis) {
+            return "Nothing to rebuild in that range.";
+        }
+
+        List<Long> toReplace = findOverlappingSessions(fromMillis, toMillis);
+        for (long sessionStartTime : toReplace) {
+            fromMillis = Math.min(fromMillis, sessionStartTime);
+            toMillis = Math.max(toMillis, getSessionEnd(sessionStartTime) + 1);
+        }
+        toMillis = Math.min(toMillis, currentSessionStart);
+
+        List<RecordFile> recordFiles = listRecordFiles(fromMillis, toMillis);
+        Julti.log(Level.INFO, "(Prismarine Tracker) Rebuilding from " + recordFiles.size() + " records...");
+
+        Builder builder = build(recordFiles, false, "Rebuild", cancelRequester::isCancelRequested);
+        if (cancelRequester.isCancelRequested()) {
+            return "Rebuild cancelled, the saved sessions were left as they were (" + builder.runsSaved + " completed runs were already saved).";
+        }
+
+        // New sessions go in before the old ones come out, so failing part way never leaves runs out
+        Set<Long> rebuiltStartTimes = new HashSet<>();
+        for (PlaySession session : builder.builtSessions) {
+            saveSession(session);
+            rebuiltStartTimes.add(session.sessionStartTime);
+        }
+        for (long sessionStartTime : toReplace) {
+            if (rebuiltStartTimes.contains(sessionStartTime)) continue; // Already replaced
+            Files.deleteIfExists(PrismarineTracker.SESSIONS_DIR.resolve(sessionStartTime + ".json"));
+            Catalog.removeSession(sessionStartTime);
+            Rollup.removeSession(sessionStartTime);
+        }
+        // Everything up to the end of the range has now been counted, unless there is a gap before the range
+        if (RecordLedger.getHighWaterMark() >= fromMillis) {
+            RecordLedger.advanceHighWaterMark(toMillis);
+        }
+
+        return "Rebuilt " + builder.builtSessions.size() + " sessions (replacing " + toReplace.size() + ") and " + builder.runsSaved + " completed runs from " + builder.recordsCounted + " records.";
+    }
+
+    /**
+     * Builds new sessions from records that were never processed, such as ones created while Julti was closed. Saved
+     * sessions are left as they are, and records already in the {@link RecordLedger} are skipped.
+     *
+     * @param recordFiles record files sorted by modification time
+     * @return a summary of what was added
+     */
+    static String catchUp(List<RecordFile> recordFiles) throws IOException {
+        Builder builder = build(recordFiles, true, "Catch-up", () -> false);
+        return "Added " + builder.sessionsSaved + " sessions and " + builder.runsSaved + " completed runs from " + builder.recordsCounted + " records made while the tracker wasn't running.";
+    }
+
+    private static Builder build(List<RecordFile> recordFiles, boolean skipProcessed, String logName, BooleanSupplier isCancelled) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        // Catching up only adds sessions, while rebuilding replaces the old ones once it's done
+        Builder builder = new Builder(skipProcessed, !skipProcessed);
+        RunStore.beginBulkInsert();
+        try {
+            for (int start = 0; start < recordFiles.size(); start += CHUNK_SIZE) {
+                if (isCancelled.getAsBoolean()) break;
+                List<RecordFile> chunk = recordFiles.subList(start, Math.min(start + CHUNK_SIZE, recordFiles.size()));
+                List<ParsedRecord> parsed;
+                try {
+                    parsed = pool.submit(() -> chunk.parallelStream().map(RecordRebuilder::parse).filter(Objects::nonNull).collect(Collectors.toList())).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+                // Parallel parsing keeps the order, but runs that ended in order can have started out of order
+                parsed.sort(Comparator.comparingLong(p -> p.startTime));
+                for (ParsedRecord record : parsed) {
+                    builder.add(record);
+                }
+                Julti.log(Level.INFO, "(Prismarine Tracker) " + logName + ": " + (start + chunk.size()) + "/" + recordFiles.size() + " records read");
+            }
+        } finally {
+            pool.shutdown();
+            RunStore.endBulkInsert();
+        }
+        builder.finishSession();
+        return builder;
+    }
+
+    /**
+     * Lists the record files modified in the time range, oldest first.
+     * <p>
+     * The folder is walked rather than listed so the modification times come with the listing (in bulk on Windows)
+     * instead of needing a separate read for each of what can be 100k+ files.
+     */
+    static List<RecordFile> listRecordFiles(long fromMillis, long toMillis) throws IOException {
+        List<RecordFile> out = new ArrayList<>();
+        if (!Files.isDirectory(PrismarineTracker.RECORDS_FOLDER)) return out;
+        Files.walkFileTree(PrismarineTracker.RECORDS_FOLDER, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                long modified = attrs.lastModifiedTime().toMillis();
+                if (modified >= fromMillis && modified < toMillis && attrs.isRegularFile() && file.getFileName().toString().endsWith(".json")) {
+                    out.add(new RecordFile(file, modified, attrs.creationTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE; // Deleted while walking
+            }
+        });
+        out.sort(Comparator.comparingLong(r -> r.modified));
+        return out;
+    }
+
+    /**
+     * @return the start times of the saved sessions that overlap the time range, oldest first
+     */
+    private static List<Long> findOverlappingSessions(long fromMillis, long toMillis) throws IOException {
+        List<Long> out = new ArrayList<>();
+        for (int i = 0; i < Catalog.getSessionCount(); i++) {
+            long time = Catalog.getSession(i).time;
+            if (time >= toMillis) break;
+            if (time >= fromMillis) {
+                out.add(time);
+            } else if (i + 1 == Catalog.getSessionCount() || Catalog.getSession(i + 1).time >= fromMillis) {
+                // Sessions don't overlap each other, so only the last one to start before the range can run into it
+                if (getSessionEnd(time) >= fromMillis) out.add(time);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return the time of the saved session's last activity, or its start time if its file can't be read
+     */
+    private static long getSessionEnd(long sessionStartTime) throws IOException {
+        Path path = PrismarineTracker.SESSIONS_DIR.resolve(sessionStartTime + ".json");
+        try {
+            PlaySession session = GSON.fromJson(FileUtil.readString(path), PlaySession.class);
+            if (session != null) return Math.max(sessionStartTime, Math.max(session.sessionEndTime, session.lastActivity));
+        } catch (NoSuchFileException | JsonSyntaxException e) {
+            Julti.log(Level.WARN, "(Prismarine Tracker) Couldn't read session file " + path.getFileName() + " to find where it ends");
+        }
+        return sessionStartTime;
+    }
+
+    private static void saveSession(PlaySession session) throws IOException {
+        FileUtil.writeString(PrismarineTracker.SESSIONS_DIR.resolve(session.sessionStartTime + ".json"), GSON.toJson(session));
+        Catalog.putSession(session);
+        Rollup.putSession(session);
+    }
+
+    /**
+     * Reads a record and works out what it adds to a session. Runs on the pool's threads so it must not touch any shared
+     * state.
+     *
+     * @return the parsed record, or null if it shouldn't be tracked or couldn't be read
+     */
+    private static ParsedRecord parse(RecordFile recordFile) {
+        RunRecord record;
+        try {
+            record = RecordReader.read(recordFile.path);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+        if (record == null || !PrismarineTracker.shouldTrack(record)) return null;
+
+        TimelineEvents timeLineEvents = new TimelineEvents();
+        for (RunRecord.TimelineEvent event : record.timelines) {
+            if (PrismarineTracker.isBeforeLan(record, event)) {
+                timeLineEvents.put(event.name, event.igt);
+            }
+        }
+
+        ParsedRecord parsed = new ParsedRecord();
+        parsed.id = RecordLedger.idOf(record);
+        parsed.endTime = recordFile.modified;
+        parsed.startTime = recordFile.modified - record.finalRta;
+        parsed.delta = new SessionDelta(parsed.endTime);
+        parsed.played = !record.timelines.isEmpty();
+        PrismarineTracker.addRecordStats(parsed.delta, record, timeLineEvents);
+        if (PrismarineTracker.isCountedCompletion(record)) {
+            parsed.completedRecord = record;
+            parsed.timeLineEvents = timeLineEvents;
+        }
+        return parsed;
+    }
+
+    /**
+     * Splits the sorted records into sessions wherever nothing happened for {@link #SESSION_GAP_MILLIS}.
+     * <p>
+     * Like while tracking, a session's resets are only counted once it has started playing. There's no reset hotkey to go
+     * by in the records, so that's taken to be from the first record with a world that was joined, which leaves out
+     * records of worlds reset when Julti was opened.
+     */
+    private static class Builder {
+        private final boolean skipProcessed;
+        /**
+         * Finished sessions are kept here rather than saved when rebuilding, so they can replace the old ones at once.
+         */
+        private final List<PlaySession> builtSessions;
+        private PlaySession session = null;
+        private boolean startedPlaying = false;
+        private int sessionsSaved = 0;
+        private int runsSaved = 0;
+        private int recordsCounted = 0;
+
+        private Builder(boolean skipProcessed, boolean keepSessions) {
+            this.skipProcessed = skipProcessed;
+            this.builtSessions = keepSessions ? new ArrayList<>() : null;
+        }
+
+        private void add(ParsedRecord record) {
+            // Ids are only added where the high-water mark won't cover the record afterwards, as every id added pushes the
+            // oldest out of the ledger, and those are the current session's
+            if (skipProcessed) {
+                if (RecordLedger.contains(record.id)) return;
+            } else if (record.endTime > RecordLedger.getHighWaterMark()) {
+                RecordLedger.add(record.id);
+            }
+
+            if (session != null && record.startTime - session.lastActivity > SESSION_GAP_MILLIS) {
+                finishSession();
+            }
+            if (session == null) {
+                session = new PlaySession(record.startTime);
+                startedPlaying = false;
+            }
+            startedPlaying |= record.played;
+            if (startedPlaying) record.delta.resets = 1;
+
+            long timeSinceLastActivity = record.startTime - session.lastActivity;
+            if (timeSinceLastActivity > BREAK_MILLIS) {
+                record.delta.breakTime = timeSinceLastActivity;
+            }
+            record.delta.lastActivity = Math.max(session.lastActivity, record.endTime);
+            session.apply(record.delta);
+            recordsCounted++;
+
+            if (record.completedRecord != null) {
+                try {
+                    PrismarineTracker.makeRunFile(record.completedRecord, record.timeLineEvents, false);
+                    runsSaved++;
+                } catch (IOException e) {
+                    Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to make run file: " + ExceptionUtil.toDetailedString(e));
+                }
+            }
+        }
+
+        private void finishSession() {
+            if (session == null) return;
+            // Like while tracking, sessions without any gold aren't saved
+            if (session.runsWithGold > 0) {
+                session.sessionEndTime = session.lastActivity;
+                if (builtSessions != null) {
+                    builtSessions.add(session);
+                    session = null;
+                    return;
+                }
+                try {
+                    saveSession(session);
+                    sessionsSaved++;
+                } catch (IOException e) {
+                    Julti.log(Level.ERROR, "(Prismarine Tracker) Failed to save rebuilt session: " + ExceptionUtil.toDetailedString(e));
+                }
+            }
+            session = null;
+        }
+    }
+
+    static class RecordFile {
+        final Path path;
+        final long modified;
+        final long created;
+
+        RecordFile(Path path, long modified, long created) {
+            this.path = path;
+            this.modified = modified;
+            this.created = created;
+        }
+    }
+
+    private static class ParsedRecord {
+        private long id;
+        private long startTime;
+        private long endTime;
+        /**
+         * Whether the world was joined, going by it having any timeline events.
+         */
+        private boolean played;
+        private SessionDelta delta;
+        // Only for completed runs, which get a run file
+        private RunRecord completedRecord;
+        private TimelineEvents timeLineEvents;
+    }
+}
@@ -0,0 +1,378 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.Level;
+import xyz.duncanruns.julti.Julti;
+import xyz.duncanruns.julti.util.FileUtil;
+import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
+import xyz.duncanruns.prismarinetracker.util.LongSeries;
+import xyz.duncanruns.prismarinetracker.util.OutputWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-day, per-week and all-time totals of every saved session.
+ * <p>
+ * Each session's contribution is kept alongside the totals, so saving a session again only takes its old contribution
+ * out and puts the new one in, and no session files need to be read except to build the rollup the first time.
+ * <p>
+ * A session counts entirely towards the day and week it started in, even if it runs past midnight. Sessions aren't
+ * split, since they only keep totals and split times, not when each run happened.
+ */
+public final class Rollup {
+    private static final Gson GSON = new Gson();
+    private static final Path ROLLUP_PATH = PrismarineTracker.TRACKER_DIR.resolve("rollup.json");
+    private static final OutputWriter<Stats> TODAY_WRITER = new OutputWriter<>(PrismarineTracker.OUTPUT_DIR.resolve("today"), Stats.class);
+    private static final OutputWriter<Stats> WEEK_WRITER = new OutputWriter<>(PrismarineTracker.OUTPUT_DIR.resolve("week"), Stats.class);
+    private static final OutputWriter<Stats> LIFETIME_WRITER = new OutputWriter<>(PrismarineTracker.OUTPUT_DIR.resolve("lifetime"), Stats.class);
+
+    // Indexes into Totals.splitSums and Totals.splitCounts
+    private static final int MONUMENT = 0;
+    private static final int VILLAGE = 1;
+    private static final int NETHER = 2;
+    private static final int FORTRESS = 3;
+    private static final int NETHER_EXIT = 4;
+    private static final int STRONGHOLD = 5;
+    private static final int END = 6;
+    private static final int FINISH = 7;
+    private static final int SPLITS = 8;
+
+    private static Data data = new Data();
+    /**
+     * When the day the today and week output files were written for ends.
+     */
+    private static volatile long writtenDayEnd = Long.MAX_VALUE;
+
+    private Rollup() {
+    }
+
+    public static String getDayKey(long time) {
+        return toLocalDate(time).toString();
+    }
+
+    public static String getWeekKey(long time) {
+        return getWeekKey(toLocalDate(time));
+    }
+
+    private static String getWeekKey(LocalDate date) {
+        return String.format("%d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    private static LocalDate toLocalDate(long time) {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * Loads the rollup, building it from the sessions folder if it is missing or if session files were added or removed
+     * outside the tracker.
+     */
+    public static synchronized void load() throws IOException {
+        if (Files.exists(ROLLUP_PATH) && !isOutdated()) {
+            try {
+                Data loaded = GSON.fromJson(FileUtil.readString(ROLLUP_PATH), Data.class);
+                if (loaded != null && loaded.contributions != null && loaded.days != null && loaded.weeks != null && loaded.allTime != null) {
+                    data = loaded;
+                    writeOutputFiles();
+                    return;
+                }
+            } catch (JsonSyntaxException ignored) {
+            }
+        }
+        rebuild();
+        save();
+    }
+
+    private static boolean isOutdated() throws IOException {
+        return Files.isDirectory(PrismarineTracker.SESSIONS_DIR) && Files.getLastModifiedTime(PrismarineTracker.SESSIONS_DIR).toMillis() > Files.getLastModifiedTime(ROLLUP_PATH).toMillis();
+    }
+
+    private static void rebuild() throws IOException {
+        data = new Data();
+        for (Path path : Catalog.listNumberedJsons(PrismarineTracker.SESSIONS_DIR)) {
+            try {
+                PlaySession session = GSON.fromJson(FileUtil.readString(path), PlaySession.class);
+                if (session != null) add(session.sessionStartTime, Totals.of(session));
+            } catch (IOException | JsonSyntaxException e) {
+                Julti.log(Level.WARN, "(Prismarine Tracker) Skipping unreadable session file " + path.getFileName());
+            }
+        }
+    }
+
+    private static void save() throws IOException {
+        FileUtil.writeString(ROLLUP_PATH, GSON.toJson(data));
+        writeOutputFiles();
+    }
+
+    private static void writeOutputFiles() throws IOException {
+        long now = System.currentTimeMillis();
+        TODAY_WRITER.write(getTotals(data.days, getDayKey(now)).toStats());
+        WEEK_WRITER.write(getTotals(data.weeks, getWeekKey(now)).toStats());
+        LIFETIME_WRITER.write(data.allTime.toStats());
+        writtenDayEnd = toLocalDate(now).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @return whether the today and week output files are for a day that has ended, and need {@link #refreshOutputFiles()}
+     */
+    public static boolean isDayOver() {
+        return System.currentTimeMillis() >= writtenDayEnd;
+    }
+
+    /**
+     * Rewrites the output files for the current day and week, without any session having changed.
+     */
+    public static synchronized void refreshOutputFiles() throws IOException {
+        writeOutputFiles();
+    }
+
+    private static Totals getTotals(Map<String, Totals> map, String key) {
+        Totals totals = map.get(key);
+        return totals == null ? new Totals() : totals;
+    }
+
+    private static void add(long sessionStartTime, Totals contribution) {
+        data.contributions.put(sessionStartTime, contribution);
+        data.days.computeIfAbsent(getDayKey(sessionStartTime), k -> new Totals()).add(contribution, 1);
+        data.weeks.computeIfAbsent(getWeekKey(sessionStartTime), k -> new Totals()).add(contribution, 1);
+        data.allTime.add(contribution, 1);
+    }
+
+    private static boolean remove(long sessionStartTime) {
+        Totals contribution = data.contributions.remove(sessionStartTime);
+        if (contribution == null) return false;
+        subtract(data.days, getDayKey(sessionStartTime), contribution);
+        subtract(data.weeks, getWeekKey(sessionStartTime), contribution);
+        data.allTime.add(contribution, -1);
+        return true;
+    }
+
+    private static void subtract(Map<String, Totals> map, String key, Totals contribution) {
+        Totals totals = map.get(key);
+        if (totals == null) return;
+        totals.add(contribution, -1);
+        if (totals.sessions <= 0) map.remove(key);
+    }
+
+    /**
+     * Replaces the session's contribution to the totals with its current numbers.
+     */
+    public static synchronized void putSession(PlaySession session) throws IOException {
+        remove(session.sessionStartTime);
+        add(session.sessionStartTime, Totals.of(session));
+        save();
+    }
+
+    public static synchronized void removeSession(long sessionStartTime) throws IOException {
+        if (remove(sessionStartTime)) save();
+    }
+
+    public static synchronized Totals getAllTime() {
+        return data.allTime.copy();
+    }
+
+    /**
+     * @return the week keys that have sessions, oldest first
+     */
+    public static synchronized List<String> getWeekKeys() {
+        return new ArrayList<>(data.weeks.keySet());
+    }
+
+    public static synchronized Totals getWeek(String weekKey) {
+        return getTotals(data.weeks, weekKey).copy();
+    }
+
+    /**
+     * @return the day keys and totals of every day in the week, oldest first
+     */
+    public static synchronized Map<String, Totals> getDaysOfWeek(String weekKey) {
+        Map<String, Totals> out = new TreeMap<>();
+        data.days.forEach((day, totals) -> {
+            if (getWeekKey(LocalDate.parse(day)).equals(weekKey)) {
+                out.put(day, totals.copy());
+            }
+        });
+        return out;
+    }
+
+    private static class Data {
+        private Map<Long, Totals> contributions = new TreeMap<>();
+        private TreeMap<String, Totals> days = new TreeMap<>();
+        private TreeMap<String, Totals> weeks = new TreeMap<>();
+        private Totals allTime = new Totals();
+    }
+
+    /**
+     * Counters and split times summed over sessions.
+     */
+    public static class Totals {
+        public int sessions;
+        public long timePlayedMillis;
+        public int breaks;
+        public int resets;
+
+        public int runsWithGold;
+        public int runsWithVillage;
+        public int runsWithTrading;
+        public int runsWith10Pearls;
+        public int runsWithNether;
+        public int runsWithFort;
+        public int runsWithNetherExit;
+        public int runsWithStronghold;
+        public int runsWithEndEnter;
+        public int runsFinished;
+
+        // Sum and amount of each split's times, see the index constants
+        private long[] splitSums = new long[SPLITS];
+        private int[] splitCounts = new int[SPLITS];
+
+        private static Totals of(PlaySession session) {
+            Totals totals = new Totals();
+            totals.sessions = 1;
+            totals.timePlayedMillis = session.toCalculatedStats().timePlayedMillis;
+            totals.breaks = session.breaks.size();
+            totals.resets = session.resets;
+
+            totals.runsWithGold = session.runsWithGold;
+            totals.runsWithVillage = session.runsWithVillage;
+            totals.runsWithTrading = session.runsWithTrading;
+            totals.runsWith10Pearls = session.runsWith10Pearls;
+            totals.runsWithNether = session.runsWithNether;
+            totals.runsWithFort = session.runsWithFort;
+            totals.runsWithNetherExit = session.runsWithNetherExit;
+            totals.runsWithStronghold = session.runsWithStronghold;
+            totals.runsWithEndEnter = session.runsWithEndEnter;
+            totals.runsFinished = session.runsFinished;
+
+            totals.setSplit(MONUMENT, session.goldBlockPickupTimes);
+            totals.setSplit(VILLAGE, session.villageEnterTimes);
+            totals.setSplit(NETHER, session.netherEnterTimes);
+            totals.setSplit(FORTRESS, session.fortressEnterTimes);
+            totals.setSplit(NETHER_EXIT, session.netherExitTimes);
+            totals.setSplit(STRONGHOLD, session.strongholdEnterTimes);
+            totals.setSplit(END, session.endEnterTimes);
+            totals.setSplit(FINISH, session.runFinishTimes);
+            return totals;
+        }
+
+        private void setSplit(int split, LongSeries times) {
+            long sum = 0;
+            for (int i = 0; i < times.size(); i++) {
+                sum += times.get(i);
+            }
+            splitSums[split] = sum;
+            splitCounts[split] = times.size();
+        }
+
+        /**
+         * Adds (sign 1) or takes away (sign -1) another set of totals.
+         */
+        private void add(Totals other, int sign) {
+            sessions += sign * other.sessions;
+            timePlayedMillis += sign * other.timePlayedMillis;
+            breaks += sign * other.breaks;
+            resets += sign * other.resets;
+
+            runsWithGold += sign * other.runsWithGold;
+            runsWithVillage += sign * other.runsWithVillage;
+            runsWithTrading += sign * other.runsWithTrading;
+            runsWith10Pearls += sign * other.runsWith10Pearls;
+            runsWithNether += sign * other.runsWithNether;
+            runsWithFort += sign * other.runsWithFort;
+            runsWithNetherExit += sign * other.runsWithNetherExit;
+            runsWithStronghold += sign * other.runsWithStronghold;
+            runsWithEndEnter += sign * other.runsWithEndEnter;
+            runsFinished += sign * other.runsFinished;
+
+            for (int i = 0; i < SPLITS; i++) {
+                splitSums[i] += sign * other.splitSums[i];
+                splitCounts[i] += sign * other.splitCounts[i];
+            }
+        }
+
+        private Totals copy() {
+            Totals copy = new Totals();
+            copy.add(this, 1);
+            return copy;
+        }
+
+        private long getSplitAverage(int split) {
+            return splitCounts[split] == 0 ? 0 : splitSums[split] / splitCounts[split];
+        }
+
+        public Stats toStats() {
+            Stats stats = new Stats();
+            stats.sessions = sessions;
+            stats.timePlayedFormatted = FormattingUtil.formatMillis(timePlayedMillis);
+            stats.breaks = breaks;
+            stats.resets = resets;
+
+            stats.runsWithMonument = runsWithGold;
+            stats.averageMonumentFormatted = FormattingUtil.formatMillis(getSplitAverage(MONUMENT));
+            stats.monumentsPerHour = FormattingUtil.getPerHour(runsWithGold, timePlayedMillis);
+            stats.runsWithVillage = runsWithVillage;
+            stats.averageVillageFormatted = FormattingUtil.formatMillis(getSplitAverage(VILLAGE));
+            stats.villagesPerHour = FormattingUtil.getPerHour(runsWithVillage, timePlayedMillis);
+            stats.runsWithTrading = runsWithTrading;
+            stats.runsWith10Pearls = runsWith10Pearls;
+
+            stats.runsWithNether = runsWithNether;
+            stats.averageNetherFormatted = FormattingUtil.formatMillis(getSplitAverage(NETHER));
+            stats.runsWithFortress = runsWithFort;
+            stats.averageFortressFormatted = FormattingUtil.formatMillis(getSplitAverage(FORTRESS));
+            stats.runsWithNetherExit = runsWithNetherExit;
+            stats.averageNetherExitFormatted = FormattingUtil.formatMillis(getSplitAverage(NETHER_EXIT));
+
+            stats.runsWithStronghold = runsWithStronghold;
+            stats.averageStrongholdFormatted = FormattingUtil.formatMillis(getSplitAverage(STRONGHOLD));
+            stats.runsWithEnd = runsWithEndEnter;
+            stats.averageEndFormatted = FormattingUtil.formatMillis(getSplitAverage(END));
+            stats.runsWithFinish = runsFinished;
+            stats.averageFinishFormatted = FormattingUtil.formatMillis(getSplitAverage(FINISH));
+            return stats;
+        }
+    }
+
+    /**
+     * The numbers of a rollup period as shown in the GUI and written to the output files.
+     */
+    public static class Stats {
+        public int sessions;
+        public String timePlayedFormatted;
+        public int breaks;
+        public int resets;
+
+        public int runsWithMonument;
+        public String averageMonumentFormatted;
+        public String monumentsPerHour;
+        public int runsWithVillage;
+        public String averageVillageFormatted;
+        public String villagesPerHour;
+        public int runsWithTrading;
+        public int runsWith10Pearls;
+
+        public int runsWithNether;
+        public String averageNetherFormatted;
+        public int runsWithFortress;
+        public String averageFortressFormatted;
+        public int runsWithNetherExit;
+        public String averageNetherExitFormatted;
+
+        public int runsWithStronghold;
+        public String averageStrongholdFormatted;
+        public int runsWithEnd;
+        public String averageEndFormatted;
+        public int runsWithFinish;
+        public String averageFinishFormatted;
+    }
+}
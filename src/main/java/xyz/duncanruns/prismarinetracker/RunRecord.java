@@ -0,0 +1,52 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a SpeedRunIGT record that the tracker actually uses, see {@link RecordReader}. Records are read on the
+ * {@link RecordParser}'s threads and counted on the ingest thread, so nothing in one can be changed after it's made.
+ */
+public final class RunRecord {
+    public final long date;
+    public final String worldName;
+    public final long finalRta;
+    public final long finalIgt;
+    public final long retimedIgt;
+    public final boolean isCompleted;
+    public final boolean isCheatAllowed;
+    public final boolean hasOpenedToLan;
+    public final long openToLanTime;
+    /**
+     * Ender pearls crafted by the first player in the stats, or -1 if missing or not read.
+     */
+    public final int craftedPearls;
+    public final List<TimelineEvent> timelines;
+
+    public RunRecord(long date, String worldName, long finalRta, long finalIgt, long retimedIgt, boolean isCompleted, boolean isCheatAllowed, boolean hasOpenedToLan, long openToLanTime, int craftedPearls, List<TimelineEvent> timelines) {
+        this.date = date;
+        this.worldName = worldName;
+        this.finalRta = finalRta;
+        this.finalIgt = finalIgt;
+        this.retimedIgt = retimedIgt;
+        this.isCompleted = isCompleted;
+        this.isCheatAllowed = isCheatAllowed;
+        this.hasOpenedToLan = hasOpenedToLan;
+        this.openToLanTime = openToLanTime;
+        this.craftedPearls = craftedPearls;
+        this.timelines = Collections.unmodifiableList(new ArrayList<>(timelines));
+    }
+
+    public static final class TimelineEvent {
+        public final String name;
+        public final long rta;
+        public final long igt;
+
+        public TimelineEvent(String name, long rta, long igt) {
+            this.name = name;
+            this.rta = rta;
+            this.igt = igt;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.Level;
+import xyz.duncanruns.julti.Julti;
+import xyz.duncanruns.julti.util.FileUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Every completed run, stored by column: one memory-mapped file of longs per {@link CompletedRun} field, with one row
+ * per run sorted by date. Reading a split across every run is a walk down one column, without opening any run files.
+ * <p>
+ * Runs are appended. A run older than the newest one is inserted in place, except during a bulk insert (a rebuild or
+ * catch-up), where such runs are held in memory and merged in all at once at the end, so each row is moved once per
+ * merge rather than once per run. Held runs can't be read until they are merged.
+ * <p>
+ * The row count is kept in its own file and only updated after a row is written, and while merging, a marker file says
+ * that the rows are being moved. Together they cover Julti closing or crashing part way: a half-written row is ignored,
+ * and a store with the marker left behind is filled again from the runs folder, which is still written for every run.
+ * The mapped files are only forced to disk after a merge and when closing, so a power cut can still lose recent rows.
+ */
+public final class RunStore {
+    private static final Gson GSON = new Gson();
+    private static final Path STORE_DIR = PrismarineTracker.TRACKER_DIR.resolve("runstore");
+    private static final Path COUNT_PATH = STORE_DIR.resolve("count.bin");
+    private static final Path MERGING_PATH = STORE_DIR.resolve("merging");
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_PENDING = 4096;
+
+    private static final Field[] FIELDS = getLongFields();
+    private static final int DATE_COLUMN = getColumnIndex("date");
+
+    private static FileChannel[] channels = null;
+    private static MappedByteBuffer[] columns = null;
+    private static FileChannel countChannel = null;
+    private static MappedByteBuffer countBuffer = null;
+    private static int capacity = 0;
+    private static int rows = 0;
+    // Runs older than the newest row, by date, waiting to be merged in
+    private static final TreeMap<Long, CompletedRun> PENDING = new TreeMap<>();
+    private static int bulkInserts = 0;
+
+    private RunStore() {
+    }
+
+    private static Field[] getLongFields() {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : CompletedRun.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.getType() != long.class) continue;
+            fields.add(field);
+        }
+        return fields.toArray(new Field[0]);
+    }
+
+    /**
+     * @return the column of the {@link CompletedRun} field
+     * @throws IllegalArgumentException if there is no long field with that name
+     */
+    public static int getColumnIndex(String fieldName) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].getName().equals(fieldName)) return i;
+        }
+        throw new IllegalArgumentException("No run column named " + fieldName);
+    }
+
+    /**
+     * Opens the store, filling it from the runs folder the first time.
+     */
+    public static synchronized void load() throws IOException {
+        close();
+        Files.createDirectories(STORE_DIR);
+        if (Files.exists(MERGING_PATH)) {
+            Julti.log(Level.WARN, "(Prismarine Tracker) Run store was closed while merging, it will be filled again from the runs folder.");
+            for (Field field : FIELDS) {
+                Files.deleteIfExists(STORE_DIR.resolve(field.getName() + ".col"));
+            }
+            Files.deleteIfExists(COUNT_PATH);
+            Files.delete(MERGING_PATH);
+        }
+        boolean existed = Files.exists(COUNT_PATH);
+
+        countChannel = FileChannel.open(COUNT_PATH, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        countBuffer = countChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        channels = new FileChannel[FIELDS.length];
+        columns = new MappedByteBuffer[FIELDS.length];
+        long smallestColumn = Long.MAX_VALUE;
+        for (int i = 0; i < FIELDS.length; i++) {
+            channels[i] = FileChannel.open(STORE_DIR.resolve(FIELDS[i].getName() + ".col"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            smallestColumn = Math.min(smallestColumn, channels[i].size() / Long.BYTES);
+        }
+        rows = existed ? (int) Math.max(0, Math.min(countBuffer.getLong(0), smallestColumn)) : 0;
+        mapColumns(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, rows)) * 2));
+
+        if (!existed) {
+            migrate();
+        }
+    }
+
+    private static void mapColumns(int newCapacity) throws IOException {
+        for (int i = 0; i < FIELDS.length; i++) {
+            columns[i] = channels[i].map(FileChannel.MapMode.READ_WRITE, 0, (long) newCapacity * Long.BYTES);
+        }
+        capacity = newCapacity;
+    }
+
+    private static void migrate() throws IOException {
+        List<CompletedRun> runs = new ArrayList<>();
+        for (Path path : Catalog.listNumberedJsons(PrismarineTracker.RUNS_DIR)) {
+            try {
+                CompletedRun run = GSON.fromJson(FileUtil.readString(path), CompletedRun.class);
+                if (run != null) runs.add(run);
+            } catch (IOException | JsonSyntaxException e) {
+                Julti.log(Level.WARN, "(Prismarine Tracker) Skipping unreadable run file " + path.getFileName());
+            }
+        }
+        runs.sort(Comparator.comparingLong(r -> r.date));
+        for (CompletedRun run : runs) {
+            put(run);
+        }
+        if (!runs.isEmpty()) {
+            Julti.log(Level.INFO, "(Prismarine Tracker) Moved " + runs.size() + " completed run(s) into the run store.");
+        }
+    }
+
+    /**
+     * @return the row of the run with the date, or (-(insertion point) - 1) if there isn't one
+     */
+    private static int indexOf(long date) {
+        int low = 0;
+        int high = rows - 1;
+        // Runs almost always come in at the end
+        if (high >= 0 && read(high, DATE_COLUMN) < date) return -rows - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midDate = read(mid, DATE_COLUMN);
+            if (midDate < date) {
+                low = mid + 1;
+            } else if (midDate > date) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    /**
+     * Adds the run, or replaces the run with the same date.
+     */
+    public static synchronized void put(CompletedRun run) throws IOException {
+        int row = indexOf(run.date);
+        if (row >= 0) {
+            writeRow(row, run);
+        } else if (-row - 1 == rows) {
+            // Anything pending is older than the newest row, so this can still go at the end
+            if (rows == capacity) {
+                mapColumns(capacity * 2);
+            }
+            writeRow(rows, run);
+            rows++;
+            countBuffer.putLong(0, rows);
+        } else {
+            PENDING.put(run.date, run);
+            if (bulkInserts == 0 || PENDING.size() >= MAX_PENDING) {
+                mergePending();
+            }
+        }
+    }
+
+    /**
+     * Starts holding back runs older than the newest one until {@link #endBulkInsert()}.
+     */
+    public static synchronized void beginBulkInsert() {
+        bulkInserts++;
+    }
+
+    /**
+     * Merges in the runs held back since {@link #beginBulkInsert()}, once every bulk insert has ended.
+     */
+    public static synchronized void endBulkInsert() throws IOException {
+        if (bulkInserts > 0) bulkInserts--;
+        if (bulkInserts == 0 && channels != null) {
+            mergePending();
+        }
+    }
+
+    /**
+     * Merges the pending runs into the columns, walking down from the end so every row is moved at most once.
+     */
+    private static void mergePending() throws IOException {
+        if (PENDING.isEmpty()) return;
+        Files.write(MERGING_PATH, new byte[0]);
+
+        int newRows = rows + PENDING.size();
+        if (newRows > capacity) {
+            mapColumns(Math.max(capacity * 2, Integer.highestOneBit(newRows) * 2));
+        }
+        Iterator<CompletedRun> pending = PENDING.descendingMap().values().iterator();
+        CompletedRun next = pending.next();
+        int from = rows - 1;
+        for (int to = newRows - 1; next != null; to--) {
+            if (from >= 0 && read(from, DATE_COLUMN) > next.date) {
+                for (MappedByteBuffer column : columns) {
+                    column.putLong(to * Long.BYTES, column.getLong(from * Long.BYTES));
+                }
+                from--;
+            } else {
+                writeRow(to, next);
+                next = pending.hasNext() ? pending.next() : null;
+            }
+        }
+        rows = newRows;
+        countBuffer.putLong(0, rows);
+        PENDING.clear();
+
+        for (MappedByteBuffer column : columns) {
+            column.force();
+        }
+        countBuffer.force();
+        Files.delete(MERGING_PATH);
+    }
+
+    private static void writeRow(int row, CompletedRun run) {
+        try {
+            for (int i = 0; i < FIELDS.length; i++) {
+                columns[i].putLong(row * Long.BYTES, FIELDS[i].getLong(run));
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static synchronized int getRunCount() {
+        return rows;
+    }
+
+    public static synchronized long get(int row, int column) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Rows: " + rows);
+        }
+        return read(row, column);
+    }
+
+    private static long read(int row, int column) {
+        return columns[column].getLong(row * Long.BYTES);
+    }
+
+    /**
+     * @return a copy of the column, one value per run
+     */
+    public static synchronized long[] getColumn(int column) {
+        long[] out = new long[rows];
+        MappedByteBuffer buffer = columns[column];
+        for (int i = 0; i < rows; i++) {
+            out[i] = buffer.getLong(i * Long.BYTES);
+        }
+        return out;
+    }
+
+    public static synchronized CompletedRun getRun(int row) {
+        CompletedRun run = new CompletedRun();
+        try {
+            for (int i = 0; i < FIELDS.length; i++) {
+                FIELDS[i].setLong(run, get(row, i));
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return run;
+    }
+
+    /**
+     * Writes everything out to disk and closes the files.
+     */
+    public static synchronized void close() throws IOException {
+        if (channels == null) return;
+        mergePending();
+        bulkInserts = 0;
+        for (MappedByteBuffer column : columns) {
+            column.force();
+        }
+        countBuffer.force();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+        countChannel.close();
+        channels = null;
+        columns = null;
+        countChannel = null;
+        countBuffer = null;
+        rows = 0;
+        capacity = 0;
+    }
+}
@@ -0,0 +1,48 @@
+package xyz.duncanruns.prismarinetracker;
+
+/**
+ * A change to a {@link PlaySession} caused by a processed record or an activity update. Counters are added to the
+ * session and times are appended to its series; fields left null don't change anything and aren't written to the
+ * session journal.
+ */
+public class SessionDelta {
+    public long time;
+
+    // Counters
+    public Integer resets;
+    public Integer runsWithGold;
+    public Integer runsWithVillage;
+    public Integer runsWithTrading;
+    public Integer runsWith10Pearls;
+    public Integer runsWithNether;
+    public Integer runsWithFort;
+    public Integer runsWithNetherExit;
+    public Integer runsWithStronghold;
+    public Integer runsWithEndEnter;
+    public Integer runsFinished;
+
+    // Times
+    public Long goldBlockPickupTime;
+    public Long villageEnterTime;
+    public Long netherEnterTime;
+    public Long fortressEnterTime;
+    public Long netherExitTime;
+    public Long strongholdEnterTime;
+    public Long endEnterTime;
+    public Long runFinishTime;
+    public Long breakTime;
+
+    public Long lastActivity;
+
+    /**
+     * The instance the record most likely came from, or null if it isn't known.
+     */
+    public Integer instance;
+
+    private SessionDelta() {
+    }
+
+    public SessionDelta(long time) {
+        this.time = time;
+    }
+}
@@ -0,0 +1,147 @@
+package xyz.duncanruns.prismarinetracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log of the changes made to the current session since its last snapshot (session.json). The first line
+ * holds the session's start time and the journal's generation, and every line after it is one compact
+ * {@link SessionDelta}.
+ * <p>
+ * Each reset starts a new generation. A snapshot records the generation and amount of entries it already contains, so
+ * if the tracker stops between writing a snapshot and resetting the journal, those entries aren't counted twice.
+ */
+public final class SessionJournal {
+    private static final Gson GSON = new Gson();
+    private static final Path JOURNAL_PATH = PrismarineTracker.TRACKER_DIR.resolve("session.journal");
+
+    private static FileChannel channel = null;
+    private static int generation = 0;
+    private static int entries = 0;
+
+    private SessionJournal() {
+    }
+
+    /**
+     * Empties the journal and starts its next generation, to be used when a snapshot has been written or a new session is
+     * started.
+     */
+    public static synchronized void reset(long sessionStartTime) throws IOException {
+        close();
+        channel = FileChannel.open(JOURNAL_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        generation++;
+        entries = 0;
+        JsonObject header = new JsonObject();
+        header.addProperty("sessionStartTime", sessionStartTime);
+        header.addProperty("generation", generation);
+        writeLine(GSON.toJson(header));
+    }
+
+    public static synchronized void append(SessionDelta delta) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(JOURNAL_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        writeLine(GSON.toJson(delta));
+        entries++;
+    }
+
+    public static synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the amount of deltas in the journal's current generation
+     */
+    public static synchronized int getEntries() {
+        return entries;
+    }
+
+    public static synchronized void close() throws IOException {
+        if (channel == null) return;
+        channel.close();
+        channel = null;
+    }
+
+    private static void writeLine(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Replays the journal on top of the last snapshot, skipping the entries the snapshot already contains. If the
+     * snapshot belongs to a different session than the journal, the journal is replayed onto a new session with the
+     * journal's start time, and the snapshot is kept as its own session. The recovered session is given the journal's
+     * generation and amount of entries, and further entries are counted on from there.
+     *
+     * @param snapshot the last snapshot, or null if there is none
+     * @return the recovered session (the snapshot if there is no journal), and the snapshot if it didn't match
+     */
+    public static synchronized Recovery recover(PlaySession snapshot) throws IOException {
+        if (!Files.exists(JOURNAL_PATH)) return new Recovery(snapshot, null);
+
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL_PATH, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null) return new Recovery(snapshot, null);
+            JsonObject header = GSON.fromJson(line, JsonObject.class);
+            long sessionStartTime = header.get("sessionStartTime").getAsLong();
+            // Journals from before generations were kept are all generation 0, like snapshots without one
+            int journalGeneration = header.has("generation") ? header.get("generation").getAsInt() : 0;
+
+            PlaySession session = snapshot;
+            PlaySession otherSession = null;
+            int alreadyApplied = 0;
+            if (session == null || session.sessionStartTime != sessionStartTime) {
+                otherSession = snapshot;
+                session = new PlaySession(sessionStartTime);
+            } else if (session.journalGeneration == journalGeneration) {
+                alreadyApplied = session.journalEntries;
+            } else if (session.journalGeneration > journalGeneration) {
+                alreadyApplied = Integer.MAX_VALUE; // The snapshot was taken after this whole generation
+            }
+            int read = 0;
+            while ((line = reader.readLine()) != null) {
+                SessionDelta delta;
+                try {
+                    delta = GSON.fromJson(line, SessionDelta.class);
+                } catch (JsonSyntaxException e) {
+                    break; // Last line was cut off while being written
+                }
+                if (delta == null) break;
+                if (++read > alreadyApplied) session.apply(delta);
+            }
+            generation = journalGeneration;
+            entries = read;
+            session.journalGeneration = journalGeneration;
+            session.journalEntries = read;
+            return new Recovery(session, otherSession);
+        }
+    }
+
+    public static final class Recovery {
+        /**
+         * The session the journal belongs to, or null if there was neither a snapshot nor a journal.
+         */
+        public final PlaySession session;
+        /**
+         * The snapshot, if it was of an earlier session than the journal's, otherwise null.
+         */
+        public final PlaySession otherSession;
+
+        private Recovery(PlaySession session, PlaySession otherSession) {
+            this.session = session;
+            this.otherSession = otherSession;
+        }
+    }
+}
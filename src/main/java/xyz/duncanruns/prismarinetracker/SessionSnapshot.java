@@ -0,0 +1,44 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The current session's numbers, published by the tracker after each change so they can be read from any thread without
+ * locking. Only the calculated stats and per-instance totals are kept, so publishing costs the same however long the
+ * session is, and nothing in a snapshot is changed after it is published.
+ */
+public final class SessionSnapshot implements SessionView {
+    /**
+     * Goes up with every change to the current session, including it being cleared, so two snapshots with the same
+     * version hold the same numbers.
+     */
+    public final long version;
+    private final long sessionStartTime;
+    private final PlaySession.CalculatedStats stats;
+    private final Map<Integer, InstanceTotals> instanceStats;
+
+    SessionSnapshot(long version, PlaySession session) {
+        this.version = version;
+        sessionStartTime = session.sessionStartTime;
+        stats = session.toCalculatedStats();
+        instanceStats = session.getInstanceStats();
+    }
+
+    @Override
+    public long getSessionStartTime() {
+        return sessionStartTime;
+    }
+
+    @Override
+    public PlaySession.CalculatedStats toCalculatedStats() {
+        return stats.copy();
+    }
+
+    @Override
+    public Map<Integer, InstanceTotals> getInstanceStats() {
+        Map<Integer, InstanceTotals> out = new TreeMap<>();
+        instanceStats.forEach((instance, totals) -> out.put(instance, totals.copy()));
+        return out;
+    }
+}
@@ -0,0 +1,21 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.util.Map;
+
+/**
+ * The numbers of a session, without anything that changes it. Both a {@link PlaySession} and the tracker's published
+ * {@link SessionSnapshot} can be shown through this.
+ */
+public interface SessionView {
+    long getSessionStartTime();
+
+    /**
+     * @return the session's stats, which the caller is free to change
+     */
+    PlaySession.CalculatedStats toCalculatedStats();
+
+    /**
+     * @return a copy of the per-instance totals, sorted by instance number
+     */
+    Map<Integer, InstanceTotals> getInstanceStats();
+}
@@ -0,0 +1,120 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.util.Arrays;
+
+/**
+ * Running totals for a series of times so that averages don't need the whole series to be walked.
+ * <p>
+ * When tracking the distribution, times are also counted into one-second buckets so percentiles can be read without
+ * sorting; times are only ever displayed to the second so nothing is lost. Times of 2 hours or more, which would need
+ * too many buckets, are rare enough to be kept exactly in a sorted array instead.
+ */
+public class TimeStats {
+    private static final int MAX_BUCKETS = 2 * 60 * 60;
+    private static final long[] EMPTY = new long[0];
+
+    private final boolean trackDistribution;
+    private long sum = 0;
+    private int count = 0;
+    private long min = Long.MAX_VALUE;
+    private int[] buckets = new int[0];
+    // Times past the buckets, sorted
+    private long[] overflow = EMPTY;
+    private int overflowCount = 0;
+
+    public TimeStats() {
+        this(false);
+    }
+
+    public TimeStats(boolean trackDistribution) {
+        this.trackDistribution = trackDistribution;
+    }
+
+    public void add(long time) {
+        sum += time;
+        count++;
+        min = Math.min(min, time);
+        if (!trackDistribution) return;
+
+        int bucket = (int) Math.max(0, Math.min(time / 1000, MAX_BUCKETS));
+        if (bucket == MAX_BUCKETS) {
+            addOverflow(time);
+            return;
+        }
+        if (bucket >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.min(MAX_BUCKETS, Math.max(bucket + 1, buckets.length * 2)));
+        }
+        buckets[bucket]++;
+    }
+
+    private void addOverflow(long time) {
+        if (overflowCount == overflow.length) {
+            overflow = Arrays.copyOf(overflow, Math.max(4, overflowCount * 2));
+        }
+        int index = Arrays.binarySearch(overflow, 0, overflowCount, time);
+        if (index < 0) index = -index - 1;
+        System.arraycopy(overflow, index, overflow, index + 1, overflowCount - index);
+        overflow[index] = time;
+        overflowCount++;
+    }
+
+    public void clear() {
+        sum = 0;
+        count = 0;
+        min = Long.MAX_VALUE;
+        buckets = new int[0];
+        overflow = EMPTY;
+        overflowCount = 0;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getAverage() {
+        if (count == 0) return 0;
+        return sum / count;
+    }
+
+    /**
+     * @return the lowest time added, or 0 if there are none
+     */
+    public long getBest() {
+        if (count == 0) return 0;
+        return min;
+    }
+
+    /**
+     * Gets several nearest-rank percentiles, rounded down to the second, in one pass over the buckets.
+     *
+     * @param percentiles numbers from 0 to 100, in ascending order
+     * @return the percentiles in milliseconds, each 0 if there are no times (or the distribution is not tracked)
+     */
+    public long[] getPercentiles(double... percentiles) {
+        long[] out = new long[percentiles.length];
+        if (count == 0 || !trackDistribution) return out;
+
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < buckets.length && next < percentiles.length; i++) {
+            seen += buckets[i];
+            while (next < percentiles.length && seen >= getRank(percentiles[next])) {
+                out[next++] = i * 1000L;
+            }
+        }
+        // Whatever is left is past the buckets
+        for (; next < percentiles.length; next++) {
+            int index = (int) Math.min(overflowCount - 1, getRank(percentiles[next]) - seen - 1);
+            out[next] = overflowCount == 0 ? (buckets.length - 1) * 1000L : overflow[index] / 1000 * 1000;
+        }
+        return out;
+    }
+
+    private long getRank(double percentile) {
+        return Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    }
+}
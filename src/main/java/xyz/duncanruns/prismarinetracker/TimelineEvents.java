@@ -0,0 +1,82 @@
+package xyz.duncanruns.prismarinetracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The igt of each timeline event the tracker looks at, for one record. Times are kept in a slot per {@link Event} with
+ * a bitmask of which events happened, so one instance can be cleared and reused for every record instead of building a
+ * map of boxed times.
+ */
+public final class TimelineEvents {
+    private final long[] igts = new long[Event.COUNT];
+    private int present = 0;
+
+    /**
+     * Removes all events.
+     */
+    public void clear() {
+        present = 0;
+    }
+
+    /**
+     * Sets the event's time, replacing any earlier time. Events the tracker doesn't look at are ignored.
+     */
+    public void put(String timelineName, long igt) {
+        Event event = Event.byName(timelineName);
+        if (event != null) put(event, igt);
+    }
+
+    public void put(Event event, long igt) {
+        igts[event.ordinal()] = igt;
+        present |= 1 << event.ordinal();
+    }
+
+    public boolean has(Event event) {
+        return (present & (1 << event.ordinal())) != 0;
+    }
+
+    /**
+     * @return the event's igt, only meaningful if the event {@link #has(Event) happened}
+     */
+    public long get(Event event) {
+        return igts[event.ordinal()];
+    }
+
+    public long getOrDefault(Event event, long defaultValue) {
+        return has(event) ? igts[event.ordinal()] : defaultValue;
+    }
+
+    public enum Event {
+        PICK_GOLD_BLOCK("pick_gold_block"),
+        FOUND_VILLAGER("found_villager"),
+        TRADE_WITH_VILLAGER("trade_with_villager"),
+        ENTER_NETHER("enter_nether"),
+        ENTER_FORTRESS("enter_fortress"),
+        NETHER_TRAVEL("nether_travel"),
+        ENTER_STRONGHOLD("enter_stronghold"),
+        ENTER_END("enter_end");
+
+        private static final int COUNT = values().length;
+        private static final Map<String, Event> BY_NAME = new HashMap<>();
+
+        static {
+            for (Event event : values()) {
+                BY_NAME.put(event.timelineName, event);
+            }
+        }
+
+        public final String timelineName;
+
+        Event(String timelineName) {
+            this.timelineName = timelineName;
+        }
+
+        /**
+         * @return the event with the timeline name, or null if the tracker doesn't look at it
+         */
+        public static Event byName(String timelineName) {
+            return BY_NAME.get(timelineName);
+        }
+    }
+}
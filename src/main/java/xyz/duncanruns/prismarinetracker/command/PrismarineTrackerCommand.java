@@ -6,15 +6,20 @@ import xyz.duncanruns.julti.cancelrequester.CancelRequester;
 import xyz.duncanruns.julti.command.Command;
 import xyz.duncanruns.julti.command.CommandFailedException;
 import xyz.duncanruns.prismarinetracker.PrismarineTracker;
+import xyz.duncanruns.prismarinetracker.RecordRebuilder;
 import xyz.duncanruns.prismarinetracker.gui.PrismarineTrackerGUI;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 public class PrismarineTrackerCommand extends Command {
     @Override
     public String helpDescription() {
         return "pris clear - Clears the current session of any stats, useful for after a warmup script" +
-                "\npris show - Opens the Prismarine Tracker GUI";
+                "\npris show - Opens the Prismarine Tracker GUI" +
+                "\npris status - Logs how the tracker's background worker is performing" +
+                "\npris rebuild <from> <to> - Rebuilds sessions and completed runs between two dates (yyyy-MM-dd) from the SpeedRunIGT records, replacing saved sessions in that range";
     }
 
     @Override
@@ -24,7 +29,7 @@ public class PrismarineTrackerCommand extends Command {
 
     @Override
     public int getMaxArgs() {
-        return 1;
+        return 3;
     }
 
     @Override
@@ -37,15 +42,34 @@ public class PrismarineTrackerCommand extends Command {
         String command = args[0];
         if ("clear".equals(command)) {
             try {
-                synchronized (Julti.getJulti()) {
-                    PrismarineTracker.clearSession();
-                }
+                PrismarineTracker.awaitStartup();
+                PrismarineTracker.clearSession();
                 Julti.log(Level.INFO, "(Prismarine Tracker) Session cleared");
             } catch (IOException e) {
                 throw new CommandFailedException(e);
             }
         } else if ("show".equals(command)) {
             PrismarineTrackerGUI.open();
+        } else if ("status".equals(command)) {
+            Julti.log(Level.INFO, "(Prismarine Tracker) Status:\n" + PrismarineTracker.getStatus());
+        } else if ("rebuild".equals(command)) {
+            if (args.length != 3) {
+                throw new CommandFailedException("Usage: pris rebuild <from> <to>");
+            }
+            LocalDate from;
+            LocalDate to;
+            try {
+                from = LocalDate.parse(args[1]);
+                to = LocalDate.parse(args[2]);
+            } catch (DateTimeParseException e) {
+                throw new CommandFailedException("Dates should be written as yyyy-MM-dd");
+            }
+            PrismarineTracker.awaitStartup();
+            try {
+                Julti.log(Level.INFO, "(Prismarine Tracker) " + RecordRebuilder.rebuild(from, to, cancelRequester));
+            } catch (IOException e) {
+                throw new CommandFailedException(e);
+            }
         } else {
             throw new CommandFailedException("Invalid argument for pris command");
         }
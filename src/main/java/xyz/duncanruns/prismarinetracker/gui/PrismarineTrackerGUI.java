@@ -1,40 +1,52 @@
 package xyz.duncanruns.prismarinetracker.gui;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import xyz.duncanruns.julti.gui.JultiGUI;
 import xyz.duncanruns.julti.gui.PluginsGUI;
 import xyz.duncanruns.julti.util.ExceptionUtil;
-import xyz.duncanruns.julti.util.FileUtil;
+import xyz.duncanruns.prismarinetracker.Catalog;
 import xyz.duncanruns.prismarinetracker.CompletedRun;
+import xyz.duncanruns.prismarinetracker.PersonalBests;
 import xyz.duncanruns.prismarinetracker.PlaySession;
 import xyz.duncanruns.prismarinetracker.PrismarineTracker;
+import xyz.duncanruns.prismarinetracker.Rollup;
+import xyz.duncanruns.prismarinetracker.RunStore;
+import xyz.duncanruns.prismarinetracker.SessionView;
 import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.text.DefaultCaret;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 public class PrismarineTrackerGUI extends JFrame {
     private static PrismarineTrackerGUI instance = null;
-    private static final Gson GSON = new Gson();
+    private static final StatsFileCache FILE_CACHE = new StatsFileCache();
     private boolean closed = false;
     private String displayType = "sessions";
     private long displayed = 0;
+    private int displayedIndex = 0;
+    private int loadGeneration = 0;
 
-    private final List<Long> allSessions = new ArrayList<>();
-    private final List<Long> allRuns = new ArrayList<>();
+    // Live updating of the current session
+    private static final int REFRESH_INTERVAL_MILLIS = 250;
+    private final AtomicBoolean sessionChanged = new AtomicBoolean(false);
+    private final Runnable sessionListener = () -> sessionChanged.set(true);
+    private final Timer refreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, a -> onRefreshTimer());
+    private final SessionTextModel currentSessionModel = new SessionTextModel();
+    private boolean showingCurrentSession = false;
 
     private JTextArea statsArea;
     private JPanel mainPanel;
@@ -51,17 +63,17 @@ public class PrismarineTrackerGUI extends JFrame {
     }
 
     public PrismarineTrackerGUI() {
-        retrieveSessions();
-        retrieveRuns();
+        ((DefaultCaret) statsArea.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE); // Keep the scroll position on refresh
         showCurrentSession();
         nextButton.addActionListener(a -> onNextButtonPress());
         previousButton.addActionListener(a -> onPreviousButtonPress());
-        if (allRuns.isEmpty()) {
-            showTypeButton.setEnabled(false);
-        } else {
-            showTypeButton.addActionListener(a -> onShowTypeButtonPress());
+        if (RunStore.getRunCount() == 0) {
+            showTypeButton.setText("Show Lifetime Stats");
         }
+        showTypeButton.addActionListener(a -> onShowTypeButtonPress());
         setupWindow();
+        PrismarineTracker.addSessionListener(sessionListener);
+        refreshTimer.start();
     }
 
     public static PrismarineTrackerGUI open() {
@@ -96,204 +108,212 @@ public class PrismarineTrackerGUI extends JFrame {
     }
 
     private static String constructInformation(PlaySession session) {
-        StringBuilder builder = new StringBuilder();
-
-        PlaySession.CalculatedStats cs = session.toCalculatedStats();
-
-        builder.append("Time Played: ").append(cs.timePlayedFormatted);
-        builder.append(" (Session Length: ").append(cs.sessionLengthFormatted).append(")");
-
-        builder.append("\nBreaks Taken: ").append(cs.breaks);
-        if (cs.breaks != 0) {
-            builder.append(" (Average Break Time: ").append(cs.averageBreakFormatted).append(")");
-        }
-
-        builder.append("\nResets: ").append(cs.resets);
-
-        if (cs.runsWithMonument != 0) {
-            builder.append("\n\nMonuments Mined: ").append(cs.runsWithMonument);
-            if (cs.averageMonumentMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageMonumentFormatted).append(")");
-            }
-            builder.append("\nMonuments per hour: ").append(cs.monumentsPerHour);
-        }
-
-        if (cs.runsWithVillage != 0) {
-            builder.append("\n\nVillages entered: ").append(cs.runsWithVillage);
-            if (cs.averageVillageMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageVillageFormatted).append(")");
-            }
-            builder.append("\nVillages per hour: ").append(cs.villagesPerHour);
-            if (cs.runsWithTrading != 0) {
-                builder.append("\nVillages with Trading: ").append(cs.runsWithTrading).append(" (Runs with 10 pearls: ").append(cs.runsWith10Pearls).append(")");
-            }
-        }
+        return new SessionTextModel().update(session);
+    }
 
-        if (cs.runsWithNether > 0) {
-            builder.append("\n\nNethers entered: ").append(cs.runsWithNether);
-            if (cs.averageFortressMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageNetherFormatted).append(")");
-            }
-        }
-        if (cs.runsWithFortress > 0) {
-            builder.append("\nFortresses entered: ").append(cs.runsWithFortress);
-            if (cs.averageFortressMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageFortressFormatted).append(")");
-            }
-        }
-        if (cs.runsWithNetherExit > 0) {
-            builder.append("\nNethers exited: ").append(cs.runsWithNetherExit);
-            if (cs.averageNetherExitMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageNetherExitFormatted).append(")");
-            }
-        }
+    private static String constructInformation(PersonalBests.Stats bests) {
+        StringBuilder builder = new StringBuilder();
 
-        if (cs.runsWithStronghold > 0) {
-            builder.append("\n\nStrongholds entered: ").append(cs.runsWithStronghold);
-            if (cs.averageStrongholdMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageStrongholdFormatted).append(")");
-            }
-        }
-        if (cs.runsWithEnd > 0) {
-            builder.append("\nEnds entered: ").append(cs.runsWithEnd);
-            if (cs.averageEndMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageEndFormatted).append(")");
-            }
+        builder.append("Personal Best: ").append(bests.pbFormatted);
+        if (!bests.pbFormatted.equals("N/A")) {
+            builder.append(" (").append(bests.pbDateFormatted).append(")");
         }
+        builder.append("\nSum of Best: ").append(bests.sumOfBestFormatted);
+        builder.append("\n\nBest Splits:");
+        builder.append("\n    Monument Mine: ").append(bests.bestMonumentFormatted);
+        builder.append("\n    Village Enter: ").append(bests.bestVillageFormatted);
+        builder.append("\n    First Trade: ").append(bests.bestTradeFormatted);
+        builder.append("\n    Nether Enter: ").append(bests.bestNetherFormatted);
+        builder.append("\n    Fortress Enter: ").append(bests.bestFortressFormatted);
+        builder.append("\n    Nether Exit: ").append(bests.bestNetherExitFormatted);
+        builder.append("\n    Stronghold Enter: ").append(bests.bestStrongholdFormatted);
+        builder.append("\n    End Enter: ").append(bests.bestEndFormatted);
+        return builder.toString();
+    }
 
+    private static String constructInformation(Rollup.Totals totals, Map<String, Rollup.Totals> days) {
+        Rollup.Stats stats = totals.toStats();
+        StringBuilder builder = new StringBuilder();
 
-        if (cs.runsWithFinish > 0) {
-            builder.append("\n\nRuns finished: ").append(cs.runsWithFinish);
-            if (cs.averageFinishMillis != 0) {
-                builder.append(" (Average Time: ").append(cs.averageFinishFormatted).append(")");
-            }
+        builder.append("Sessions: ").append(stats.sessions);
+        builder.append("\nTime Played: ").append(stats.timePlayedFormatted);
+        builder.append("\nBreaks Taken: ").append(stats.breaks);
+        builder.append("\nResets: ").append(stats.resets);
+
+        builder.append("\n\nMonuments Mined: ").append(stats.runsWithMonument).append(" (Average Time: ").append(stats.averageMonumentFormatted).append(")");
+        builder.append("\nMonuments per hour: ").append(stats.monumentsPerHour);
+        builder.append("\n\nVillages entered: ").append(stats.runsWithVillage).append(" (Average Time: ").append(stats.averageVillageFormatted).append(")");
+        builder.append("\nVillages per hour: ").append(stats.villagesPerHour);
+        builder.append("\nVillages with Trading: ").append(stats.runsWithTrading).append(" (Runs with 10 pearls: ").append(stats.runsWith10Pearls).append(")");
+
+        builder.append("\n\nNethers entered: ").append(stats.runsWithNether).append(" (Average Time: ").append(stats.averageNetherFormatted).append(")");
+        builder.append("\nFortresses entered: ").append(stats.runsWithFortress).append(" (Average Time: ").append(stats.averageFortressFormatted).append(")");
+        builder.append("\nNethers exited: ").append(stats.runsWithNetherExit).append(" (Average Time: ").append(stats.averageNetherExitFormatted).append(")");
+
+        builder.append("\n\nStrongholds entered: ").append(stats.runsWithStronghold).append(" (Average Time: ").append(stats.averageStrongholdFormatted).append(")");
+        builder.append("\nEnds entered: ").append(stats.runsWithEnd).append(" (Average Time: ").append(stats.averageEndFormatted).append(")");
+        builder.append("\n\nRuns finished: ").append(stats.runsWithFinish).append(" (Average Time: ").append(stats.averageFinishFormatted).append(")");
+
+        if (!days.isEmpty()) {
+            builder.append("\n\nDays:");
+            days.forEach((day, dayTotals) -> builder.append("\n    ").append(day).append(": ")
+                    .append(dayTotals.sessions).append(dayTotals.sessions == 1 ? " session, " : " sessions, ")
+                    .append(FormattingUtil.formatMillis(dayTotals.timePlayedMillis)).append(" played, ")
+                    .append(dayTotals.runsWithGold).append(" monuments"));
         }
-
         return builder.toString();
     }
 
     private static long getCurrentSessionStartTime() {
-        return PrismarineTracker.getCurrentSession().sessionStartTime;
+        return PrismarineTracker.getCurrentSession().getSessionStartTime();
     }
 
-    private void retrieveRuns() {
-        if (!Files.exists(PrismarineTracker.RUNS_DIR)) {
-            return;
-        }
-        Pattern numberPattern = Pattern.compile("\\d+");
-        try {
-            List<Long> runLongs = Files.list(PrismarineTracker.RUNS_DIR)
-                    .map(Path::getFileName)
-                    .map(Object::toString)
-                    .filter(s -> s.endsWith(".json"))
-                    .map(s -> s.substring(0, s.length() - 5))
-                    .filter(s -> numberPattern.matcher(s).matches())
-                    .map(Long::parseLong)
-                    .sorted()
-                    .collect(Collectors.toList());
-            allRuns.addAll(runLongs);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * The current session is only in the catalog once it has been saved, until then it is shown after every saved one.
+     */
+    private static boolean isCurrentSessionCataloged() {
+        return Catalog.indexOfSession(getCurrentSessionStartTime()) != -1;
     }
 
-    private void retrieveSessions() {
-        if (!Files.exists(PrismarineTracker.SESSIONS_DIR)) {
-            return;
-        }
-        Pattern numberPattern = Pattern.compile("\\d+");
-        try {
-            List<Long> sessionLongs = Files.list(PrismarineTracker.SESSIONS_DIR)
-                    .map(Path::getFileName)
-                    .map(Object::toString)
-                    .filter(s -> s.endsWith(".json"))
-                    .map(s -> s.substring(0, s.length() - 5))
-                    .filter(s -> numberPattern.matcher(s).matches())
-                    .map(Long::parseLong)
-                    .sorted()
-                    .collect(Collectors.toList());
-            allSessions.addAll(sessionLongs);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private static int getSessionCount() {
+        return Catalog.getSessionCount() + (isCurrentSessionCataloged() ? 0 : 1);
+    }
+
+    private static long getSessionStartTime(int index) {
+        return index < Catalog.getSessionCount() ? Catalog.getSession(index).time : getCurrentSessionStartTime();
     }
 
     private void onShowTypeButtonPress() {
-        if (displayType.equals("sessions")) {
+        if (displayType.equals("sessions") && RunStore.getRunCount() > 0) {
             displayType = "runs";
-            showTypeButton.setText("Show Sessions");
+            showTypeButton.setText("Show Lifetime Stats");
             showLatestRun();
-        } else { // displaying.equals("sessions")
+        } else if (!displayType.equals("lifetime")) {
+            displayType = "lifetime";
+            showTypeButton.setText("Show Sessions");
+            showLifetime(Rollup.getWeekKeys().size());
+        } else {
             displayType = "sessions";
-            showTypeButton.setText("Show Completed Runs");
+            showTypeButton.setText(RunStore.getRunCount() > 0 ? "Show Completed Runs" : "Show Lifetime Stats");
             showCurrentSession();
         }
     }
 
+    /**
+     * Shows a week of the rollup, or the all-time totals for the index after the last week.
+     */
+    private void showLifetime(int index) {
+        loadGeneration++;
+        showingCurrentSession = false;
+        List<String> weekKeys = Rollup.getWeekKeys();
+        displayedIndex = Math.min(index, weekKeys.size());
+        nameLabel.setToolTipText(null);
+        if (displayedIndex == weekKeys.size()) {
+            nameLabel.setText("All Time");
+            statsArea.setText(constructInformation(PersonalBests.getStats()) + "\n\n" + constructInformation(Rollup.getAllTime(), Collections.emptyMap()));
+        } else {
+            String weekKey = weekKeys.get(displayedIndex);
+            nameLabel.setText("Week " + weekKey);
+            statsArea.setText(constructInformation(Rollup.getWeek(weekKey), Rollup.getDaysOfWeek(weekKey)));
+        }
+        revalidateButtons();
+    }
+
     private void showLatestRun() {
-        displayed = allRuns.get(allRuns.size() - 1);
-        showRun(displayed);
+        showRun(RunStore.getRunCount() - 1);
     }
 
-    private void showRun(long toDisplay) {
-        displayed = toDisplay;
-        CompletedRun cr;
-        try {
-            cr = GSON.fromJson(FileUtil.readString(PrismarineTracker.RUNS_DIR.resolve(toDisplay + ".json")), CompletedRun.class);
-        } catch (IOException e) {
-            statsArea.setText("Failed to read file!\n" + ExceptionUtil.toDetailedString(e));
-            return;
-        }
+    private static Path getSessionPath(int index) {
+        return PrismarineTracker.SESSIONS_DIR.resolve(getSessionStartTime(index) + ".json");
+    }
+
+    /**
+     * Reads and parses the file on a background thread, then shows it unless something else has been shown since.
+     */
+    private <T> void loadAndShow(Path path, Class<T> type, Function<T, String> toText) {
+        int generation = ++loadGeneration;
+        statsArea.setText("Loading...");
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                if (!Files.exists(path)) {
+                    throw new NoSuchFileException(path.toString());
+                }
+                return FILE_CACHE.load(path, type);
+            }
 
-        statsArea.setText(constructInformation(cr));
+            @Override
+            protected void done() {
+                if (generation != loadGeneration) return;
+                try {
+                    statsArea.setText(toText.apply(get()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof NoSuchFileException) {
+                        statsArea.setText("File doesn't exist!\nIt must have been deleted while this GUI was open...");
+                    } else {
+                        statsArea.setText("Failed to read file!\n" + ExceptionUtil.toDetailedString(e.getCause()));
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    private void showRun(int index) {
+        loadGeneration++; // Anything still loading shouldn't replace this
+        showingCurrentSession = false;
+        displayedIndex = index;
+        CompletedRun run = RunStore.getRun(index);
+        displayed = run.date;
+        nameLabel.setToolTipText("Final Retime: " + FormattingUtil.formatMillis(run.completionRetime));
+        statsArea.setText(constructInformation(run));
         revalidateButtons();
         revalidateLabel();
     }
 
     private void onNextButtonPress() {
-        boolean showingRuns = displayType.equals("runs");
-        List<Long> allThings = showingRuns ? allRuns : allSessions;
-        int index = allThings.indexOf(displayed);
-        if (showingRuns) {
-            showRun(allThings.get(Math.min(index + 1, allThings.size() - 1)));
+        if (displayType.equals("lifetime")) {
+            showLifetime(displayedIndex + 1);
+        } else if (displayType.equals("runs")) {
+            showRun(Math.min(displayedIndex + 1, RunStore.getRunCount() - 1));
         } else {
-            showSession(allThings.get(Math.min(index + 1, allThings.size() - 1)));
+            showSession(Math.min(displayedIndex + 1, getSessionCount() - 1));
         }
     }
 
     private void onPreviousButtonPress() {
-        boolean showingRuns = displayType.equals("runs");
-        List<Long> allThings = showingRuns ? allRuns : allSessions;
-        int index = allThings.indexOf(displayed);
-        if (showingRuns) {
-            showRun(allThings.get(Math.max(index - 1, 0)));
+        if (displayType.equals("lifetime")) {
+            showLifetime(Math.max(displayedIndex - 1, 0));
+        } else if (displayType.equals("runs")) {
+            showRun(Math.max(displayedIndex - 1, 0));
         } else {
-            showSession(allThings.get(Math.max(index - 1, 0)));
+            showSession(Math.max(displayedIndex - 1, 0));
         }
     }
 
-    private void showSession(Long l) {
+    private void showSession(int index) {
+        long l = getSessionStartTime(index);
         if (l == getCurrentSessionStartTime()) {
             showCurrentSession();
             return;
         }
+        showingCurrentSession = false;
         displayed = l;
+        displayedIndex = index;
+        Catalog.SessionEntry entry = Catalog.getSession(index);
+        nameLabel.setToolTipText(entry.runsWithGold + " monuments, " + entry.resets + " resets, " + FormattingUtil.formatMillis(entry.timePlayedMillis) + " played");
+        loadAndShow(getSessionPath(index), PlaySession.class, PrismarineTrackerGUI::constructInformation);
         revalidateButtons();
+        revalidateLabel();
 
-        Path path = PrismarineTracker.SESSIONS_DIR.resolve(l + ".json");
-        if (!Files.exists(path)) {
-            statsArea.setText("File for the session doesn't exist!\nIt must have been deleted while this GUI was open...");
-            return;
-        }
+        prefetchSession(index - 1);
+        prefetchSession(index + 1);
+    }
 
-        try {
-            String s = FileUtil.readString(path);
-            PlaySession playSession = GSON.fromJson(s, PlaySession.class);
-            statsArea.setText(constructInformation(playSession));
-        } catch (IOException | JsonSyntaxException e) {
-            statsArea.setText("Failed to read file!\n" + ExceptionUtil.toDetailedString(e));
-        }
-        revalidateLabel();
+    private void prefetchSession(int index) {
+        if (index < 0 || index >= getSessionCount() || getSessionStartTime(index) == getCurrentSessionStartTime()) return;
+        FILE_CACHE.prefetch(getSessionPath(index), PlaySession.class);
     }
 
     private void revalidateLabel() {
@@ -318,31 +338,55 @@ public class PrismarineTrackerGUI extends JFrame {
     }
 
     private void showCurrentSession() {
-        PlaySession s = PrismarineTracker.getCurrentSession();
-        displayed = s.sessionStartTime;
-        statsArea.setText(constructInformation(s));
+        loadGeneration++; // Anything still loading shouldn't replace this
+        showingCurrentSession = true;
+        sessionChanged.set(false);
+        SessionView s = PrismarineTracker.getCurrentSession();
+        displayed = s.getSessionStartTime();
+        int cataloged = Catalog.indexOfSession(displayed);
+        displayedIndex = cataloged == -1 ? Catalog.getSessionCount() : cataloged;
+        nameLabel.setToolTipText(null);
+        statsArea.setText(currentSessionModel.update(s));
 
-        if (!allSessions.contains(s.sessionStartTime)) {
-            allSessions.add(s.sessionStartTime);
-        }
         revalidateButtons();
         this.nameLabel.setText("Current Session");
+
+        prefetchSession(displayedIndex - 1);
+    }
+
+    /**
+     * Redraws the current session if it has changed, at most once per refresh interval.
+     */
+    private void onRefreshTimer() {
+        if (!showingCurrentSession || !sessionChanged.getAndSet(false)) return;
+        SessionView s = PrismarineTracker.getCurrentSession();
+        if (s.getSessionStartTime() != displayed) {
+            showCurrentSession(); // Session was cleared
+            return;
+        }
+        String text = currentSessionModel.update(s);
+        if (!text.equals(statsArea.getText())) {
+            statsArea.setText(text);
+        }
     }
 
     private void revalidateButtons() {
-        if (displayType.equals("runs")) {
-            int index = allRuns.indexOf(displayed);
-            previousButton.setEnabled(index > 0);
-            nextButton.setEnabled(index < allRuns.size() - 1);
+        int count;
+        if (displayType.equals("lifetime")) {
+            count = Rollup.getWeekKeys().size() + 1;
+        } else if (displayType.equals("runs")) {
+            count = RunStore.getRunCount();
         } else {
-            int index = allSessions.indexOf(displayed);
-            previousButton.setEnabled(index > 0);
-            nextButton.setEnabled(index < allSessions.size() - 1);
+            count = getSessionCount();
         }
+        previousButton.setEnabled(displayedIndex > 0);
+        nextButton.setEnabled(displayedIndex < count - 1);
     }
 
     private void onClose() {
         this.closed = true;
+        refreshTimer.stop();
+        PrismarineTracker.removeSessionListener(sessionListener);
     }
 
     public boolean isClosed() {
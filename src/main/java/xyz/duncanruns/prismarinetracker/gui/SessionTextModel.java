@@ -0,0 +1,185 @@
+package xyz.duncanruns.prismarinetracker.gui;
+
+import xyz.duncanruns.prismarinetracker.InstanceTotals;
+import xyz.duncanruns.prismarinetracker.PlaySession;
+import xyz.duncanruns.prismarinetracker.SessionView;
+import xyz.duncanruns.prismarinetracker.util.FormattingUtil;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The text shown for a session, kept as sections that are only rebuilt when the numbers they show have changed.
+ */
+final class SessionTextModel {
+    private static final int SECTIONS = 7;
+
+    private final Object[][] keys = new Object[SECTIONS][];
+    private final String[] sections = new String[SECTIONS];
+    private String text = null;
+
+    private static void appendOverview(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        builder.append("Time Played: ").append(cs.timePlayedFormatted);
+        builder.append(" (Session Length: ").append(cs.sessionLengthFormatted).append(")");
+
+        builder.append("\nBreaks Taken: ").append(cs.breaks);
+        if (cs.breaks != 0) {
+            builder.append(" (Average Break Time: ").append(cs.averageBreakFormatted).append(")");
+        }
+
+        builder.append("\nResets: ").append(cs.resets);
+    }
+
+    private static void appendMonument(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        if (cs.runsWithMonument != 0) {
+            builder.append("\n\nMonuments Mined: ").append(cs.runsWithMonument);
+            if (cs.averageMonumentMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageMonumentFormatted).append(")");
+                appendDistribution(builder, cs.bestMonumentFormatted, cs.p10MonumentFormatted, cs.medianMonumentFormatted, cs.p90MonumentFormatted);
+            }
+            builder.append("\nMonuments per hour: ").append(cs.monumentsPerHour);
+        }
+    }
+
+    private static void appendVillage(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        if (cs.runsWithVillage != 0) {
+            builder.append("\n\nVillages entered: ").append(cs.runsWithVillage);
+            if (cs.averageVillageMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageVillageFormatted).append(")");
+                appendDistribution(builder, cs.bestVillageFormatted, cs.p10VillageFormatted, cs.medianVillageFormatted, cs.p90VillageFormatted);
+            }
+            builder.append("\nVillages per hour: ").append(cs.villagesPerHour);
+            if (cs.runsWithTrading != 0) {
+                builder.append("\nVillages with Trading: ").append(cs.runsWithTrading).append(" (Runs with 10 pearls: ").append(cs.runsWith10Pearls).append(")");
+            }
+        }
+    }
+
+    private static void appendNether(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        if (cs.runsWithNether > 0) {
+            builder.append("\n\nNethers entered: ").append(cs.runsWithNether);
+            if (cs.averageFortressMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageNetherFormatted).append(")");
+                appendDistribution(builder, cs.bestNetherFormatted, cs.p10NetherFormatted, cs.medianNetherFormatted, cs.p90NetherFormatted);
+            }
+        }
+        if (cs.runsWithFortress > 0) {
+            builder.append("\nFortresses entered: ").append(cs.runsWithFortress);
+            if (cs.averageFortressMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageFortressFormatted).append(")");
+                appendDistribution(builder, cs.bestFortressFormatted, cs.p10FortressFormatted, cs.medianFortressFormatted, cs.p90FortressFormatted);
+            }
+        }
+        if (cs.runsWithNetherExit > 0) {
+            builder.append("\nNethers exited: ").append(cs.runsWithNetherExit);
+            if (cs.averageNetherExitMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageNetherExitFormatted).append(")");
+                appendDistribution(builder, cs.bestNetherExitFormatted, cs.p10NetherExitFormatted, cs.medianNetherExitFormatted, cs.p90NetherExitFormatted);
+            }
+        }
+    }
+
+    private static void appendEnd(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        if (cs.runsWithStronghold > 0) {
+            builder.append("\n\nStrongholds entered: ").append(cs.runsWithStronghold);
+            if (cs.averageStrongholdMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageStrongholdFormatted).append(")");
+                appendDistribution(builder, cs.bestStrongholdFormatted, cs.p10StrongholdFormatted, cs.medianStrongholdFormatted, cs.p90StrongholdFormatted);
+            }
+        }
+        if (cs.runsWithEnd > 0) {
+            builder.append("\nEnds entered: ").append(cs.runsWithEnd);
+            if (cs.averageEndMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageEndFormatted).append(")");
+                appendDistribution(builder, cs.bestEndFormatted, cs.p10EndFormatted, cs.medianEndFormatted, cs.p90EndFormatted);
+            }
+        }
+    }
+
+    private static void appendFinish(StringBuilder builder, PlaySession.CalculatedStats cs) {
+        if (cs.runsWithFinish > 0) {
+            builder.append("\n\nRuns finished: ").append(cs.runsWithFinish);
+            if (cs.averageFinishMillis != 0) {
+                builder.append(" (Average Time: ").append(cs.averageFinishFormatted).append(")");
+                appendDistribution(builder, cs.bestFinishFormatted, cs.p10FinishFormatted, cs.medianFinishFormatted, cs.p90FinishFormatted);
+            }
+        }
+    }
+
+    private static void appendInstances(StringBuilder builder, Map<Integer, InstanceTotals> instances) {
+        if (instances.isEmpty()) return;
+        builder.append("\n\nInstances:");
+        instances.forEach((instance, totals) -> {
+            builder.append("\n    Instance ").append(instance).append(": ").append(totals.resets).append(" resets");
+            appendInstanceSplit(builder, totals.runsWithGold, " monuments (", totals, InstanceTotals.MONUMENT);
+            appendInstanceSplit(builder, totals.runsWithVillage, " villages (", totals, InstanceTotals.VILLAGE);
+            appendInstanceSplit(builder, totals.runsWithNether, " nethers (", totals, InstanceTotals.NETHER);
+            appendInstanceSplit(builder, totals.runsWithStronghold, " strongholds (", totals, InstanceTotals.STRONGHOLD);
+            appendInstanceSplit(builder, totals.runsFinished, " finished (", totals, InstanceTotals.FINISH);
+        });
+    }
+
+    private static void appendInstanceSplit(StringBuilder builder, int runs, String name, InstanceTotals totals, int split) {
+        if (runs <= 0) return;
+        builder.append(", ").append(runs).append(name).append(FormattingUtil.formatMillis(totals.getAverageMillis(split))).append(")");
+    }
+
+    private static void appendDistribution(StringBuilder builder, String best, String p10, String median, String p90) {
+        builder.append("\n    Best: ").append(best)
+                .append(", p10: ").append(p10)
+                .append(", Median: ").append(median)
+                .append(", p90: ").append(p90);
+    }
+
+    /**
+     * Rebuilds the sections whose numbers changed since the last update.
+     *
+     * @return the full text
+     */
+    String update(SessionView session) {
+        PlaySession.CalculatedStats cs = session.toCalculatedStats();
+        boolean changed = updateSection(0, SessionTextModel::appendOverview, cs,
+                cs.timePlayedFormatted, cs.sessionLengthFormatted, cs.breaks, cs.averageBreakFormatted, cs.resets);
+        changed |= updateSection(1, SessionTextModel::appendMonument, cs,
+                cs.runsWithMonument, cs.monumentsPerHour, cs.averageMonumentMillis, cs.bestMonumentMillis, cs.p10MonumentMillis, cs.medianMonumentMillis, cs.p90MonumentMillis);
+        changed |= updateSection(2, SessionTextModel::appendVillage, cs,
+                cs.runsWithVillage, cs.villagesPerHour, cs.runsWithTrading, cs.runsWith10Pearls, cs.averageVillageMillis, cs.bestVillageMillis, cs.p10VillageMillis, cs.medianVillageMillis, cs.p90VillageMillis);
+        changed |= updateSection(3, SessionTextModel::appendNether, cs,
+                cs.runsWithNether, cs.averageNetherMillis, cs.bestNetherMillis, cs.p10NetherMillis, cs.medianNetherMillis, cs.p90NetherMillis,
+                cs.runsWithFortress, cs.averageFortressMillis, cs.bestFortressMillis, cs.p10FortressMillis, cs.medianFortressMillis, cs.p90FortressMillis,
+                cs.runsWithNetherExit, cs.averageNetherExitMillis, cs.bestNetherExitMillis, cs.p10NetherExitMillis, cs.medianNetherExitMillis, cs.p90NetherExitMillis);
+        changed |= updateSection(4, SessionTextModel::appendEnd, cs,
+                cs.runsWithStronghold, cs.averageStrongholdMillis, cs.bestStrongholdMillis, cs.p10StrongholdMillis, cs.medianStrongholdMillis, cs.p90StrongholdMillis,
+                cs.runsWithEnd, cs.averageEndMillis, cs.bestEndMillis, cs.p10EndMillis, cs.medianEndMillis, cs.p90EndMillis);
+        changed |= updateSection(5, SessionTextModel::appendFinish, cs,
+                cs.runsWithFinish, cs.averageFinishMillis, cs.bestFinishMillis, cs.p10FinishMillis, cs.medianFinishMillis, cs.p90FinishMillis);
+
+        changed |= updateInstances(session.getInstanceStats());
+
+        if (changed) {
+            text = String.join("", sections);
+        }
+        return text;
+    }
+
+    private boolean updateInstances(Map<Integer, InstanceTotals> instances) {
+        List<Object> key = new ArrayList<>();
+        instances.forEach((instance, totals) -> {
+            Collections.addAll(key, instance, totals.resets, totals.runsWithGold, totals.runsWithVillage, totals.runsWithNether,
+                    totals.runsWithStronghold, totals.runsFinished);
+            for (int split : new int[]{InstanceTotals.MONUMENT, InstanceTotals.VILLAGE, InstanceTotals.NETHER, InstanceTotals.STRONGHOLD, InstanceTotals.FINISH}) {
+                key.add(totals.getAverageMillis(split));
+            }
+        });
+        return updateSection(6, (builder, c) -> appendInstances(builder, instances), null, key.toArray());
+    }
+
+    private boolean updateSection(int index, BiConsumer<StringBuilder, PlaySession.CalculatedStats> appender, PlaySession.CalculatedStats cs, Object... key) {
+        if (Arrays.equals(keys[index], key)) return false;
+        StringBuilder builder = new StringBuilder();
+        appender.accept(builder, cs);
+        sections[index] = builder.toString();
+        keys[index] = key;
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+package xyz.duncanruns.prismarinetracker.gui;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import xyz.duncanruns.julti.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A bounded, least-recently-used cache of parsed session files, with a background thread to load files before they
+ * are asked for.
+ */
+final class StatsFileCache {
+    private static final Gson GSON = new Gson();
+    private static final int CAPACITY = 32;
+
+    private final Map<Path, Object> cache = new LinkedHashMap<Path, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Object> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "prismarine-tracker-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Gets the parsed file from the cache, or reads and parses it if it isn't there. Should not be called on the
+     * event dispatch thread.
+     */
+    <T> T load(Path path, Class<T> type) throws IOException, JsonSyntaxException {
+        synchronized (cache) {
+            Object cached = cache.get(path);
+            if (type.isInstance(cached)) return type.cast(cached);
+        }
+        T loaded = GSON.fromJson(FileUtil.readString(path), type);
+        synchronized (cache) {
+            cache.put(path, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Loads the file into the cache in the background, failures are ignored.
+     */
+    void prefetch(Path path, Class<?> type) {
+        synchronized (cache) {
+            if (cache.containsKey(path)) return;
+        }
+        prefetcher.execute(() -> {
+            try {
+                load(path, type);
+            } catch (IOException | JsonSyntaxException ignored) {
+            }
+        });
+    }
+}
@@ -1,14 +1,64 @@
 package xyz.duncanruns.prismarinetracker.util;
 
+import java.text.DecimalFormatSymbols;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
+import java.util.Locale;
 
+/**
+ * Formatting for everything the tracker shows. The common cases are written into a reused builder by hand, and anything
+ * the hand-written path can't match exactly (other digits, calendars, negative numbers...) falls back to the
+ * {@link SimpleDateFormat} and {@link String#format} calls it replaces, so the output is always the same.
+ */
 public final class FormattingUtil {
+    /**
+     * Dates are only written by hand from Java 9. Java 8's DateTimeFormatter prints "LLLL" as the month's number
+     * (JDK-8114833), and its "MMMM" names don't match SimpleDateFormat's for every locale either.
+     */
+    private static final boolean JAVA_9_OR_LATER = !System.getProperty("java.specification.version").startsWith("1.");
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+    private static volatile LocaleFormats localeFormats = null;
+
     private FormattingUtil() {
     }
 
+    private static StringBuilder getBuilder() {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static LocaleFormats getLocaleFormats() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleFormats formats = localeFormats;
+        if (formats == null || !formats.locale.equals(locale)) {
+            localeFormats = formats = new LocaleFormats(locale);
+        }
+        return formats;
+    }
+
     public static String formatDate(long millis) {
+        LocaleFormats formats = getLocaleFormats();
+        if (!formats.plainDates) {
+            return formatDateLegacy(millis);
+        }
+
+        // Cached formatters read the default time zone on each call, like a new SimpleDateFormat would
+        Instant instant = Instant.ofEpochMilli(millis);
+        ZoneId zone = ZoneId.systemDefault();
+        StringBuilder builder = getBuilder();
+        formats.month.withZone(zone).formatTo(instant, builder);
+        int day = instant.atZone(zone).getDayOfMonth();
+        builder.append(' ').append(day).append(getDayOfMonthSuffix(day));
+        formats.yearAndTime.withZone(zone).formatTo(instant, builder);
+        return builder.toString();
+    }
+
+    private static String formatDateLegacy(long millis) {
         Date date = new Date(millis);
 
         // Modify the day part to add appropriate suffix
@@ -37,17 +87,31 @@ public final class FormattingUtil {
         }
     }
 
-    public static long getAverageTime(List<Long> times) {
-        if (times.isEmpty()) return 0;
-        long total = times.stream().mapToLong(v -> v).sum();
-        return total / times.size();
-    }
-
     public static String formatMillis(long totalMillis) {
         return formatSeconds(totalMillis / 1000);
     }
 
     public static String formatSeconds(long totalSeconds) {
+        if (totalSeconds < 0 || !getLocaleFormats().plainDigits) {
+            return formatSecondsLegacy(totalSeconds);
+        }
+
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+        long seconds = totalSeconds % 60;
+
+        StringBuilder builder = getBuilder();
+        if (hours == 0) {
+            builder.append(minutes);
+        } else {
+            builder.append(hours);
+            appendTwoDigits(builder.append(':'), minutes);
+        }
+        appendTwoDigits(builder.append(':'), seconds);
+        return builder.toString();
+    }
+
+    private static String formatSecondsLegacy(long totalSeconds) {
         long hours = totalSeconds / 3600;
         long minutes = (totalSeconds % 3600) / 60;
         long seconds = totalSeconds % 60;
@@ -58,9 +122,49 @@ public final class FormattingUtil {
         return String.format("%d:%02d:%02d", hours, minutes, seconds);
     }
 
+    private static void appendTwoDigits(StringBuilder builder, long value) {
+        if (value < 10) builder.append('0');
+        builder.append(value);
+    }
+
     public static String getPerHour(int total, long timePlayed) {
         double hoursPlayed = timePlayed / 3600000.0;
         double occurrencesPerHour = total / hoursPlayed;
-        return String.format("%.2f", occurrencesPerHour);
+
+        // String.format rounds the exact value half up, which rounding the scaled double only matches away from ties
+        double scaled = occurrencesPerHour * 100;
+        double fraction = scaled - Math.floor(scaled);
+        if (!getLocaleFormats().plainDecimals || !(occurrencesPerHour >= 0) || scaled >= 1e15 || Math.abs(fraction - 0.5) < 1e-6) {
+            return String.format("%.2f", occurrencesPerHour);
+        }
+
+        long hundredths = (long) Math.floor(scaled + 0.5);
+        StringBuilder builder = getBuilder();
+        builder.append(hundredths / 100).append('.');
+        appendTwoDigits(builder, hundredths % 100);
+        return builder.toString();
+    }
+
+    /**
+     * Formatters for one locale, and whether that locale writes dates and numbers the way the hand-written path does.
+     */
+    private static class LocaleFormats {
+        private final Locale locale;
+        private final boolean plainDigits;
+        private final boolean plainDecimals;
+        private final boolean plainDates;
+        // SimpleDateFormat uses the standalone month name when there is no day in the pattern
+        private final DateTimeFormatter month;
+        private final DateTimeFormatter yearAndTime;
+
+        private LocaleFormats(Locale locale) {
+            this.locale = locale;
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            plainDigits = symbols.getZeroDigit() == '0';
+            plainDecimals = plainDigits && symbols.getDecimalSeparator() == '.';
+            plainDates = JAVA_9_OR_LATER && plainDigits && "gregory".equals(Calendar.getInstance(locale).getCalendarType());
+            month = DateTimeFormatter.ofPattern("LLLL", locale);
+            yearAndTime = DateTimeFormatter.ofPattern(", yyyy, HH:mm", locale);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package xyz.duncanruns.prismarinetracker.util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive longs. Saved by Gson as a plain JSON array of numbers, the same as a {@code List<Long>}.
+ */
+@JsonAdapter(LongSeries.Adapter.class)
+public class LongSeries {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values = EMPTY;
+    private int size = 0;
+
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(8, size + (size >> 1)));
+        }
+        values[size++] = value;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public static class Adapter extends TypeAdapter<LongSeries> {
+        @Override
+        public void write(JsonWriter out, LongSeries series) throws IOException {
+            out.beginArray();
+            for (int i = 0; i < series.size; i++) {
+                out.value(series.values[i]);
+            }
+            out.endArray();
+        }
+
+        @Override
+        public LongSeries read(JsonReader in) throws IOException {
+            LongSeries series = new LongSeries();
+            in.beginArray();
+            while (in.hasNext()) {
+                series.add(in.nextLong());
+            }
+            in.endArray();
+            return series;
+        }
+    }
+}
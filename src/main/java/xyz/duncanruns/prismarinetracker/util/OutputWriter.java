@@ -0,0 +1,96 @@
+package xyz.duncanruns.prismarinetracker.util;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes each field of an object to its own "[field name].txt" file in a directory, for OBS text sources to read.
+ * <p>
+ * Files are only rewritten when their value has changed since the last write, and are replaced atomically so a reader
+ * never sees a half-written file.
+ */
+public class OutputWriter<T> {
+    private final Path directory;
+    private final Field[] fields;
+    private final Path[] paths;
+    private final String[] lastWritten;
+    private boolean directoryCreated = false;
+
+    private final AtomicLong writesPerformed = new AtomicLong();
+    private final AtomicLong writesSkipped = new AtomicLong();
+
+    public OutputWriter(Path directory, Class<T> type) {
+        this.directory = directory;
+        List<Field> fieldList = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || field.isAnnotationPresent(NotWritten.class)) continue;
+            field.setAccessible(true);
+            fieldList.add(field);
+        }
+        fields = fieldList.toArray(new Field[0]);
+        paths = new Path[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            paths[i] = directory.resolve(fields[i].getName() + ".txt");
+        }
+        lastWritten = new String[fields.length];
+    }
+
+    private static void writeAtomically(Path path, String value) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempPath, value.getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized void write(T object) throws IOException {
+        if (!directoryCreated) {
+            Files.createDirectories(directory);
+            directoryCreated = true;
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            String value;
+            try {
+                value = String.valueOf(fields[i].get(object));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            if (value.equals(lastWritten[i])) {
+                writesSkipped.incrementAndGet();
+                continue;
+            }
+            writeAtomically(paths[i], value);
+            lastWritten[i] = value;
+            writesPerformed.incrementAndGet();
+        }
+    }
+
+    public long getWritesPerformed() {
+        return writesPerformed.get();
+    }
+
+    public long getWritesSkipped() {
+        return writesSkipped.get();
+    }
+
+    /**
+     * Marks a field that is only for the GUI and shouldn't get a file.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface NotWritten {
+    }
+}